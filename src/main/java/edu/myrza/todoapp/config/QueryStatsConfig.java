@@ -0,0 +1,40 @@
+package edu.myrza.todoapp.config;
+
+/*
+*  Wraps the DataSource into a proxy that reports every statement and fetched row to the current QueryStats scope.
+*  Disabled with 'query-budget.enabled=false'.
+* */
+
+import edu.myrza.todoapp.util.QueryStatsListener;
+import net.ttddyy.dsproxy.support.ProxyDataSource;
+import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+
+@Configuration
+@ConditionalOnProperty(name = "query-budget.enabled", havingValue = "true", matchIfMissing = true)
+public class QueryStatsConfig {
+
+    @Bean
+    public static BeanPostProcessor queryStatsDataSourceProxy() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if(!(bean instanceof DataSource) || bean instanceof ProxyDataSource)
+                    return bean;
+
+                QueryStatsListener listener = new QueryStatsListener();
+                return ProxyDataSourceBuilder.create(beanName, (DataSource) bean)
+                                             .listener(listener)
+                                             .methodListener(listener)
+                                             .proxyResultSet()
+                                             .build();
+            }
+        };
+    }
+
+}
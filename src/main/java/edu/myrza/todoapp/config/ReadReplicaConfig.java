@@ -0,0 +1,105 @@
+package edu.myrza.todoapp.config;
+
+/*
+*  Read replicas (opt-in, 'datasource.replicas.urls'): the application's DataSource becomes a router that sends
+*  read-only transactions to replicas and the rest to the primary (see ReplicaRoutingDataSource).
+*
+*  Replicas share the primary's credentials and 'spring.datasource.hikari.*' settings, their connections are
+*  read-only. Pools aren't beans of their own, so they aren't wrapped twice by QueryStatsConfig, but they are
+*  registered as 'hikaricp.*' metrics under the names 'primary' and 'replica-<n>'. Flyway and everything else that
+*  runs outside of a read-only transaction uses the primary.
+* */
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import edu.myrza.todoapp.util.ReplicaRoutingDataSource;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.annotation.PreDestroy;
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+@Configuration
+@ConditionalOnProperty(name = "datasource.replicas.urls")
+public class ReadReplicaConfig {
+
+    private final List<HikariDataSource> pools = new ArrayList<>();
+    private final ScheduledExecutorService lagChecker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "replica-lag-checker");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @Bean
+    public DataSource dataSource(
+            DataSourceProperties properties,
+            Environment env,
+            MeterRegistry meterRegistry,
+            @Value("${datasource.replicas.urls}") List<String> replicaUrls,
+            @Value("${datasource.replicas.max-lag-millis:1000}") long maxLagMillis,
+            @Value("${datasource.replicas.check-interval-millis:1000}") long checkIntervalMillis,
+            @Value("${datasource.replicas.sticky-millis:5000}") long stickyMillis)
+    {
+        HikariDataSource primary = pool(properties, properties.determineUrl(), ReplicaRoutingDataSource.PRIMARY, env, meterRegistry);
+
+        Map<String, DataSource> replicas = new LinkedHashMap<>();
+        for(String url : replicaUrls) {
+            String name = "replica-" + replicas.size();
+            HikariDataSource replica = pool(properties, url.trim(), name, env, meterRegistry);
+            replica.setReadOnly(true);
+            replicas.put(name, replica);
+        }
+
+        ReplicaRoutingDataSource router = new ReplicaRoutingDataSource(primary, replicas, maxLagMillis, stickyMillis);
+        router.afterPropertiesSet();
+        lagChecker.scheduleWithFixedDelay(router::refreshLag, 0, checkIntervalMillis, TimeUnit.MILLISECONDS);
+
+        for(String replica : replicas.keySet())
+            Gauge.builder("datasource.replica.lag", router, r -> r.lagMillis(replica))
+                 .tag("replica", replica).baseUnit("milliseconds").register(meterRegistry);
+        FunctionCounter.builder("datasource.reads", router, ReplicaRoutingDataSource::replicaReads).tag("target", "replica").register(meterRegistry);
+        FunctionCounter.builder("datasource.reads", router, ReplicaRoutingDataSource::primaryReads).tag("target", "primary").register(meterRegistry);
+
+        // defaults are given, so the proxy doesn't ask a real connection for them at startup
+        LazyConnectionDataSourceProxy lazy = new LazyConnectionDataSourceProxy();
+        lazy.setTargetDataSource(router);
+        lazy.setDefaultAutoCommit(true);
+        lazy.setDefaultTransactionIsolation(Connection.TRANSACTION_READ_COMMITTED);
+        lazy.afterPropertiesSet();
+        return lazy;
+    }
+
+    @PreDestroy
+    public void close() {
+        lagChecker.shutdownNow();
+        pools.forEach(HikariDataSource::close);
+    }
+
+    private HikariDataSource pool(DataSourceProperties properties, String url, String name, Environment env, MeterRegistry meterRegistry) {
+        HikariDataSource pool = properties.initializeDataSourceBuilder().type(HikariDataSource.class).url(url).build();
+        Binder.get(env).bind("spring.datasource.hikari", Bindable.ofInstance(pool));
+        pool.setPoolName(name);
+        pool.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(meterRegistry));
+        pools.add(pool);
+        return pool;
+    }
+
+}
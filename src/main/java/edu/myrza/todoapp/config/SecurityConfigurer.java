@@ -39,17 +39,21 @@ public class SecurityConfigurer extends WebSecurityConfigurerAdapter {
     @Override
     protected void configure(HttpSecurity http) throws Exception {
 
-        String[] userAllowedURIs = { "/folder/**","/file/**" };
+        String[] userAllowedURIs = { "/folder/**","/file/**","/changes","/archives/**","/audit/**" };
 
         http.csrf().disable().authorizeRequests()
                 .antMatchers("/","/register","/login","static/**",
                 "/file").permitAll()
                 .antMatchers(userAllowedURIs).hasRole("USER") // only user
                 .antMatchers("/logout").hasAnyRole("USER", "ADMIN") // EITHER admin OR user
+                .antMatchers("/actuator/**","/admin/**").hasRole("ADMIN") // only admin
                 .and()
                 // No session is created and maintained
                 // because we will use JWT tokens for that
-                .sessionManagement().sessionCreationPolicy(SessionCreationPolicy.STATELESS);
+                .sessionManagement().sessionCreationPolicy(SessionCreationPolicy.STATELESS)
+                .and()
+                // default LogoutFilter would swallow '/logout' before it reaches AuthenticationController
+                .logout().disable();
 
         http.addFilterBefore(jwtRequestFilter, UsernamePasswordAuthenticationFilter.class);
     }
@@ -0,0 +1,66 @@
+package edu.myrza.todoapp.config;
+
+/*
+*  Opt-in mode (file.io.virtual-threads.enabled=true) that runs request handling on virtual threads.
+*
+*  Uploads/downloads/archive builds block on I/O for as long as the client is slow. With platform threads
+*  a few dozen slow clients exhaust tomcat's pool (server.tomcat.threads.max) and cheap listing calls queue
+*  behind them. With virtual threads every request gets its own cheap thread, so blocking I/O in
+*  FileSystemUtil only parks a virtual thread.
+*
+*  The project is still compiled for java 8 (spring boot 2.4 can't scan java 21 class files), so the
+*  virtual thread executor is looked up reflectively and the mode requires running on java 21+.
+* */
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import javax.annotation.PreDestroy;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+@Configuration
+@ConditionalOnProperty(name = "file.io.virtual-threads.enabled", havingValue = "true")
+public class VirtualThreadConfig implements WebMvcConfigurer {
+
+    private final ExecutorService virtualThreadExecutor = newVirtualThreadPerTaskExecutor();
+
+    // Tomcat hands every accepted request to this executor instead of its own worker pool
+    @Bean
+    public TomcatProtocolHandlerCustomizer<?> virtualThreadProtocolHandlerCustomizer() {
+        return protocolHandler -> protocolHandler.setExecutor(virtualThreadExecutor);
+    }
+
+    // Async request processing (Callable/StreamingResponseBody) runs on virtual threads as well
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        configurer.setTaskExecutor(virtualThreadTaskExecutor());
+    }
+
+    @Bean
+    public AsyncTaskExecutor virtualThreadTaskExecutor() {
+        return new TaskExecutorAdapter(virtualThreadExecutor);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        virtualThreadExecutor.shutdown();
+    }
+
+    public static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (NoSuchMethodException ex) {
+            throw new IllegalStateException("Virtual threads require java 21+, current java version is " + System.getProperty("java.version"), ex);
+        } catch (ReflectiveOperationException ex) {
+            throw new IllegalStateException("Couldn't create virtual thread executor", ex);
+        }
+    }
+
+}
@@ -0,0 +1,30 @@
+package edu.myrza.todoapp.controller;
+
+import edu.myrza.todoapp.exceptions.BussinesException;
+import edu.myrza.todoapp.exceptions.ServiceOverloadedException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+
+import java.util.Collections;
+import java.util.Map;
+
+@RestControllerAdvice
+public class ApiExceptionHandler {
+
+    @ExceptionHandler(BussinesException.class)
+    public ResponseEntity<Map<String, String>> handle(BussinesException ex) {
+        return ResponseEntity.status(ex.getCode().getStatus())
+                             .body(Collections.singletonMap("code", ex.getCode().name()));
+    }
+
+    @ExceptionHandler(ServiceOverloadedException.class)
+    public ResponseEntity<Map<String, String>> handle(ServiceOverloadedException ex) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                             .header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfterSeconds()))
+                             .body(Collections.singletonMap("code", "OVERLOADED"));
+    }
+
+}
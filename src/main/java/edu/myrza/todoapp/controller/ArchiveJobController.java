@@ -0,0 +1,63 @@
+package edu.myrza.todoapp.controller;
+
+import edu.myrza.todoapp.model.dto.files.ArchiveJobDto;
+import edu.myrza.todoapp.model.dto.files.FileIdsWrapper;
+import edu.myrza.todoapp.model.entity.User;
+import edu.myrza.todoapp.service.ArchiveJobService;
+import edu.myrza.todoapp.service.UserService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.security.Principal;
+import java.util.UUID;
+
+@RestController
+public class ArchiveJobController {
+
+    private static final String CONTENT_DISPOSITION = "Content-Disposition";
+    private static final String CONTENT_DISPOSITION_ATTACH = "attachment; filename=\"%s\"";
+
+    private final UserService userService;
+    private final ArchiveJobService archiveJobService;
+
+    @Autowired
+    public ArchiveJobController(UserService userService, ArchiveJobService archiveJobService) {
+        this.userService = userService;
+        this.archiveJobService = archiveJobService;
+    }
+
+    @PostMapping("/archives")
+    public ResponseEntity<ArchiveJobDto> submitJob(Principal principal, @RequestBody FileIdsWrapper idsWrapper) {
+        User user = userService.loadUserByUsername(principal.getName());
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(archiveJobService.submit(user, idsWrapper.getFileIds()));
+    }
+
+    @GetMapping("/archives/{jobId}")
+    public ResponseEntity<ArchiveJobDto> serveJob(Principal principal, @PathVariable("jobId") UUID jobId) {
+        User user = userService.loadUserByUsername(principal.getName());
+        return archiveJobService.serveJob(user, jobId)
+                                .map(ResponseEntity::ok)
+                                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    // Range requests are handled by spring for Resource bodies ('206 Partial Content')
+    @GetMapping("/archives/{jobId}/download")
+    public ResponseEntity<Resource> serveArchive(Principal principal, @PathVariable("jobId") UUID jobId) {
+        User user = userService.loadUserByUsername(principal.getName());
+        return archiveJobService.serveArchive(user, jobId)
+                                .map(resource -> ResponseEntity.ok()
+                                                               .header(CONTENT_DISPOSITION, String.format(CONTENT_DISPOSITION_ATTACH, "files.zip"))
+                                                               .body(resource))
+                                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    @DeleteMapping("/archives/{jobId}")
+    public ResponseEntity<?> cancelJob(Principal principal, @PathVariable("jobId") UUID jobId) {
+        User user = userService.loadUserByUsername(principal.getName());
+        return archiveJobService.cancel(user, jobId) ? ResponseEntity.noContent().build() : ResponseEntity.notFound().build();
+    }
+
+}
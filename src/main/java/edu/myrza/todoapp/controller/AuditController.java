@@ -0,0 +1,57 @@
+package edu.myrza.todoapp.controller;
+
+import edu.myrza.todoapp.model.dto.audit.AuditEventsResponse;
+import edu.myrza.todoapp.model.entity.User;
+import edu.myrza.todoapp.model.enums.AuditAction;
+import edu.myrza.todoapp.service.AuditLog;
+import edu.myrza.todoapp.service.UserService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.security.Principal;
+import java.util.UUID;
+
+@RestController
+public class AuditController {
+
+    private final UserService userService;
+    private final AuditLog auditLog;
+
+    @Autowired
+    public AuditController(UserService userService, AuditLog auditLog) {
+        this.userService = userService;
+        this.auditLog = auditLog;
+    }
+
+    // The user's own events, newest first. Pass 'cursor' of the response as 'before' to get older ones.
+    @GetMapping("/audit/events")
+    public AuditEventsResponse serveEvents(
+            Principal principal,
+            @RequestParam(value = "fileId", required = false) UUID fileId,
+            @RequestParam(value = "action", required = false) AuditAction action,
+            @RequestParam(value = "before", required = false) UUID before)
+    {
+        User user = userService.loadUserByUsername(principal.getName());
+        return auditLog.serveEvents(user.getId(), fileId, action, before);
+    }
+
+    // Events of any user (or of everybody if 'username' is missing)
+    @GetMapping("/admin/audit/events")
+    public ResponseEntity<AuditEventsResponse> serveAllEvents(
+            @RequestParam(value = "username", required = false) String username,
+            @RequestParam(value = "fileId", required = false) UUID fileId,
+            @RequestParam(value = "action", required = false) AuditAction action,
+            @RequestParam(value = "before", required = false) UUID before)
+    {
+        if(username == null)
+            return ResponseEntity.ok(auditLog.serveEvents(null, fileId, action, before));
+
+        return userService.findUser(username)
+                          .map(user -> ResponseEntity.ok(auditLog.serveEvents(user.getId(), fileId, action, before)))
+                          .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+}
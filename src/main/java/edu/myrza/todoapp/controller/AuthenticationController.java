@@ -8,17 +8,22 @@ import edu.myrza.todoapp.model.dto.auth.RegistrationResponse;
 import edu.myrza.todoapp.model.dto.files.FileRecordDto;
 import edu.myrza.todoapp.model.entity.User;
 import edu.myrza.todoapp.service.FileService;
+import edu.myrza.todoapp.service.TokenRevocationService;
 import edu.myrza.todoapp.service.UserService;
 import edu.myrza.todoapp.util.JwtUtil;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.util.UUID;
+
 @RestController
 public class AuthenticationController {
 
@@ -26,18 +31,21 @@ public class AuthenticationController {
     private final UserService userService;
     private final FileService fileService;
     private final JwtUtil jwtUtil;
+    private final TokenRevocationService tokenRevocationService;
 
     @Autowired
     public AuthenticationController(
             AuthenticationManager authenticationManager,
             UserService userService,
             FileService fileService,
-            JwtUtil jwtUtil)
+            JwtUtil jwtUtil,
+            TokenRevocationService tokenRevocationService)
     {
         this.fileService = fileService;
         this.authenticationManager = authenticationManager;
         this.jwtUtil = jwtUtil;
         this.userService = userService;
+        this.tokenRevocationService = tokenRevocationService;
     }
 
     @PostMapping("/login")
@@ -56,13 +64,16 @@ public class AuthenticationController {
 
         String token = jwtUtil.generateToken(user);
 
-        return ResponseEntity.ok(new LoginResponse(username, user.getEmail(), token, username));
+        UUID rootFolderId = fileService.serveUserRootFolderId(user);
+
+        return ResponseEntity.ok(new LoginResponse(username, user.getEmail(), token, rootFolderId));
     }
 
     @PostMapping("/logout")
-    public ResponseEntity<?> logout() {
+    public ResponseEntity<?> logout(@RequestHeader(HttpHeaders.AUTHORIZATION) String authorizationHeader) {
 
-        //Here we should save token into 'black list' table
+        // the token has been validated by JwtRequestFilter (this endpoint requires authentication)
+        tokenRevocationService.revoke(authorizationHeader.substring("Bearer ".length()));
         return ResponseEntity.ok().build();
     }
 
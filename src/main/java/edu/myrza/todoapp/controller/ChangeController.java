@@ -0,0 +1,39 @@
+package edu.myrza.todoapp.controller;
+
+import edu.myrza.todoapp.model.dto.changes.ChangesResponse;
+import edu.myrza.todoapp.model.entity.User;
+import edu.myrza.todoapp.service.ChangeJournalService;
+import edu.myrza.todoapp.service.UserService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import java.security.Principal;
+
+@RestController
+public class ChangeController {
+
+    private final UserService userService;
+    private final ChangeJournalService changeJournalService;
+
+    @Autowired
+    public ChangeController(UserService userService, ChangeJournalService changeJournalService) {
+        this.userService = userService;
+        this.changeJournalService = changeJournalService;
+    }
+
+    // since : cursor returned by the previous call (0 for the very first call)
+    // wait  : seconds to wait for new changes if there are none yet (0 means don't wait)
+    @GetMapping("/changes")
+    public DeferredResult<ChangesResponse> serveChanges(
+            Principal principal,
+            @RequestParam(value = "since", defaultValue = "0") long since,
+            @RequestParam(value = "wait", defaultValue = "0") long waitSeconds)
+    {
+        User user = userService.loadUserByUsername(principal.getName());
+        return changeJournalService.awaitChanges(user, since, waitSeconds);
+    }
+
+}
@@ -1,22 +1,42 @@
 package edu.myrza.todoapp.controller;
 
+import edu.myrza.todoapp.model.dto.delta.FileSignatureDto;
+import edu.myrza.todoapp.model.dto.files.CopyFilesReq;
 import edu.myrza.todoapp.model.dto.files.FileIdsWrapper;
 import edu.myrza.todoapp.model.dto.files.FileRecordDto;
+import edu.myrza.todoapp.model.dto.files.FolderContentDto;
 import edu.myrza.todoapp.model.dto.files.MoveFilesReq;
 import edu.myrza.todoapp.model.entity.User;
+import edu.myrza.todoapp.model.enums.AuditAction;
+import edu.myrza.todoapp.model.enums.StorageEncoding;
+import edu.myrza.todoapp.service.AuditLog;
+import edu.myrza.todoapp.service.DeltaSyncService;
 import edu.myrza.todoapp.service.FileService;
+import edu.myrza.todoapp.service.HeavyOperationScheduler;
+import edu.myrza.todoapp.service.ThumbnailService;
 import edu.myrza.todoapp.service.UserService;
 import edu.myrza.todoapp.util.ResourceDecorator;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.security.Principal;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 
 @RestController
 public class FileController {
@@ -26,17 +46,35 @@ public class FileController {
 
     private final UserService userService;
     private final FileService fileService;
+    private final ThumbnailService thumbnailService;
+    private final DeltaSyncService deltaSyncService;
+    private final HeavyOperationScheduler heavyOperationScheduler;
+    private final AuditLog auditLog;
+    private final long largeUploadBytes;
 
     @Autowired
-    public FileController(UserService userService, FileService fileService) {
+    public FileController(
+            UserService userService,
+            FileService fileService,
+            ThumbnailService thumbnailService,
+            DeltaSyncService deltaSyncService,
+            HeavyOperationScheduler heavyOperationScheduler,
+            AuditLog auditLog,
+            @Value("${heavy-ops.upload.min-bytes:67108864}") long largeUploadBytes)
+    {
         this.userService = userService;
         this.fileService = fileService;
+        this.thumbnailService = thumbnailService;
+        this.deltaSyncService = deltaSyncService;
+        this.heavyOperationScheduler = heavyOperationScheduler;
+        this.auditLog = auditLog;
+        this.largeUploadBytes = largeUploadBytes;
     }
 
     // OPERATIONS APPLIED TO BOTH FILES AND FOLDERS
 
     @PostMapping("/file/{fileId}/rename/{newName}")
-    public ResponseEntity<?> renameFile(Principal principal, @PathVariable("fileId") String fileId, @PathVariable("newName") String newName) {
+    public ResponseEntity<?> renameFile(Principal principal, @PathVariable("fileId") UUID fileId, @PathVariable("newName") String newName) {
 
         User user = userService.loadUserByUsername(principal.getName());
         Optional<FileRecordDto> optDto = fileService.renameFile(user, fileId, newName);
@@ -48,7 +86,11 @@ public class FileController {
     public ResponseEntity<Resource> serveFiles(Principal principal, @RequestBody FileIdsWrapper idsWrapper) throws IOException {
 
         User user = userService.loadUserByUsername(principal.getName());
-        Resource resource = fileService.downloadFiles(user, idsWrapper.getFileIds());
+
+        Resource resource;
+        try(HeavyOperationScheduler.Permit permit = heavyOperationScheduler.acquire(HeavyOperationScheduler.Kind.ARCHIVE, user.getUsername())) {
+            resource = fileService.downloadFiles(user, idsWrapper.getFileIds());
+        }
 
         return ResponseEntity.ok()
                 .header(CONTENT_DISPOSITION, String.format(CONTENT_DISPOSITION_ATTACH, "files.zip"))
@@ -63,6 +105,13 @@ public class FileController {
         return fileService.moveFiles(user, req.getSrcId(), req.getDestId(), req.getFileIds());
     }
 
+    @PostMapping("/files/copy")
+    public List<FileRecordDto> copyFiles(Principal principal, @RequestBody CopyFilesReq req) {
+
+        User user = userService.loadUserByUsername(principal.getName());
+        return fileService.copyFiles(user, req.getDestId(), req.getFileIds());
+    }
+
     @DeleteMapping("/files/delete")
     public void deleteFiles(Principal principal, @RequestBody FileIdsWrapper idsWrapper) {
 
@@ -75,7 +124,7 @@ public class FileController {
     @PostMapping("/folder/{parentFolderId}/new/{newFolderName}")
     public FileRecordDto createFolder(
             Principal principal,
-            @PathVariable("parentFolderId") String parentFolderId,
+            @PathVariable("parentFolderId") UUID parentFolderId,
             @PathVariable("newFolderName") String newFolderName)
     {
         User user = userService.loadUserByUsername(principal.getName());
@@ -83,9 +132,38 @@ public class FileController {
     }
 
     @GetMapping("/folder/{folderId}/content")
-    public List<FileRecordDto> serveFolderContent(Principal principal, @PathVariable("folderId") String folderId) {
+    public ResponseEntity<List<FileRecordDto>> serveFolderContent(Principal principal, @PathVariable("folderId") UUID folderId, WebRequest request) {
+        User user = userService.loadUserByUsername(principal.getName());
+        return serveFolderContent(user, folderId, request);
+    }
+
+    // e.g. GET /folder/content?path=/projects/2026
+    @GetMapping("/folder/content")
+    public ResponseEntity<List<FileRecordDto>> serveFolderContentByPath(Principal principal, @RequestParam("path") String path, WebRequest request) {
         User user = userService.loadUserByUsername(principal.getName());
-        return fileService.serveFolderContent(user, folderId);
+        return fileService.resolvePath(user, path)
+                          .map(folderId -> serveFolderContent(user, folderId, request))
+                          .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    // Ancestors from the root folder down to the file/folder itself
+    @GetMapping("/file/{fileId}/breadcrumbs")
+    public List<FileRecordDto> serveBreadcrumbs(Principal principal, @PathVariable("fileId") UUID fileId) {
+        User user = userService.loadUserByUsername(principal.getName());
+        return fileService.serveBreadcrumbs(user, fileId);
+    }
+
+    private ResponseEntity<List<FileRecordDto>> serveFolderContent(User user, UUID folderId, WebRequest request) {
+
+        // the folder's version changes with every mutation of its direct children, so it identifies the listing
+        Optional<FolderContentDto> folderContent = fileService.serveFolderContent(user, folderId, folder ->
+                request.checkNotModified(etag(folderId, folder.getVersion(), null), toEpochMillis(folder.getLastUpdate())));
+        if(!folderContent.isPresent())
+            return ResponseEntity.notFound().build();
+        if(folderContent.get().getContent() == null)
+            return null;
+
+        return ResponseEntity.ok().body(folderContent.get().getContent());
     }
 
     // FILE OPERATIONS
@@ -93,25 +171,173 @@ public class FileController {
     @PostMapping("/folder/{folderId}/upload")
     public List<FileRecordDto> uploadFiles(
             Principal principal,
-            @PathVariable("folderId") String folderId,
+            @PathVariable("folderId") UUID folderId,
             @ModelAttribute("files") MultipartFile[] files)
     {
         User user = userService.loadUserByUsername(principal.getName());
-        return fileService.uploadFiles(user, folderId, files);
+
+        return withUploadSlot(user, files, () -> fileService.uploadFiles(user, folderId, files));
+    }
+
+    // Upload of a directory tree, 'paths' (repeated, one per file, in the same order) are relative to 'folderId', e.g. "photos/2026/a.jpg".
+    // Read as raw parameter values, @RequestParam would split a single path on commas.
+    @PostMapping("/folder/{folderId}/upload-tree")
+    public List<FileRecordDto> uploadTree(
+            Principal principal,
+            @PathVariable("folderId") UUID folderId,
+            @ModelAttribute("files") MultipartFile[] files,
+            WebRequest request)
+    {
+        User user = userService.loadUserByUsername(principal.getName());
+        String[] pathValues = request.getParameterValues("paths");
+        List<String> paths = pathValues == null ? null : Arrays.asList(pathValues);
+        return withUploadSlot(user, files, () -> fileService.uploadTree(user, folderId, files, paths));
+    }
+
+    // Upload of a zip archive that is extracted into the folder
+    @PostMapping("/folder/{folderId}/extract")
+    public List<FileRecordDto> extractArchive(
+            Principal principal,
+            @PathVariable("folderId") UUID folderId,
+            @RequestParam("archive") MultipartFile archive) throws IOException
+    {
+        User user = userService.loadUserByUsername(principal.getName());
+
+        // inflating is cpu and disk heavy regardless of the archive's size
+        try(HeavyOperationScheduler.Permit permit = heavyOperationScheduler.acquire(HeavyOperationScheduler.Kind.UPLOAD, user.getUsername())) {
+            return fileService.extractArchive(user, folderId, archive);
+        }
     }
 
     @GetMapping("/file/download/{fileId}")
-    public ResponseEntity<Resource> serveFile(Principal principal, @PathVariable("fileId") String fileId) throws IOException {
+    public ResponseEntity<Resource> serveFile(
+            Principal principal,
+            @PathVariable("fileId") UUID fileId,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+            WebRequest request) throws IOException
+    {
+        User user = userService.loadUserByUsername(principal.getName());
+        return serveFile(user, fileId, acceptEncoding, request);
+    }
+
+    // e.g. GET /file/download?path=/projects/2026/report.pdf
+    @GetMapping("/file/download")
+    public ResponseEntity<Resource> serveFileByPath(
+            Principal principal,
+            @RequestParam("path") String path,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+            WebRequest request) throws IOException
+    {
         User user = userService.loadUserByUsername(principal.getName());
-        ResourceDecorator decorator = fileService.downloadFile(user, fileId);
+        Optional<UUID> fileId = fileService.resolvePath(user, path);
+        if(!fileId.isPresent())
+            return ResponseEntity.notFound().build();
+
+        return serveFile(user, fileId.get(), acceptEncoding, request);
+    }
+
+    private ResponseEntity<Resource> serveFile(User user, UUID fileId, String acceptEncoding, WebRequest request) throws IOException {
+        // gzip and identity are different representations, so they must have different strong etags
+        ResourceDecorator decorator = fileService.downloadFile(user, fileId, acceptsGzip(acceptEncoding), representation ->
+                request.checkNotModified(etag(fileId, representation.getVersion(), representation.getContentEncoding() == StorageEncoding.GZIP ? "gzip" : null),
+                                         toEpochMillis(representation.getLastModified())));
         Resource resource = decorator.getResource();
+        if(resource == null)
+            return null;
+
         String origName = decorator.getOriginalName();
 
-        return ResponseEntity.ok()
+        auditLog.record(user, AuditAction.DOWNLOAD, fileId, origName);
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
                              .header(CONTENT_DISPOSITION, String.format(CONTENT_DISPOSITION_ATTACH, origName))
-                             .contentLength(resource.contentLength())
-                             .body(resource);
+                             .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING)
+                             .contentLength(decorator.getContentLength());
+
+        if(decorator.getContentEncoding() == StorageEncoding.GZIP)
+            response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+
+        return response.body(resource);
+    }
+
+    // Block signatures of the stored file, the first step of a delta upload (see DeltaSyncService)
+    @GetMapping("/file/{fileId}/signature")
+    public FileSignatureDto serveSignature(
+            Principal principal,
+            @PathVariable("fileId") UUID fileId,
+            @RequestParam(value = "blockSize", required = false) Integer blockSize) throws IOException
+    {
+        User user = userService.loadUserByUsername(principal.getName());
+
+        // the whole file is read and hashed
+        try(HeavyOperationScheduler.Permit permit = heavyOperationScheduler.acquire(HeavyOperationScheduler.Kind.UPLOAD, user.getUsername())) {
+            return deltaSyncService.serveSignature(user, fileId, blockSize);
+        }
     }
 
+    // New content of the file as copy/data instructions against 'baseVersion', 'size' and 'sha256' describe the result
+    @PutMapping(value = "/file/{fileId}/delta", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public FileRecordDto applyDelta(
+            Principal principal,
+            @PathVariable("fileId") UUID fileId,
+            @RequestParam("baseVersion") long baseVersion,
+            @RequestParam("blockSize") int blockSize,
+            @RequestParam("size") long size,
+            @RequestParam("sha256") String sha256,
+            InputStream delta) throws IOException
+    {
+        User user = userService.loadUserByUsername(principal.getName());
+
+        try(HeavyOperationScheduler.Permit permit = heavyOperationScheduler.acquire(HeavyOperationScheduler.Kind.UPLOAD, user.getUsername())) {
+            return deltaSyncService.applyDelta(user, fileId, baseVersion, blockSize, size, sha256, delta);
+        }
+    }
+
+    @GetMapping("/file/{fileId}/thumbnail")
+    public ResponseEntity<Resource> serveThumbnail(Principal principal, @PathVariable("fileId") UUID fileId) {
+        User user = userService.loadUserByUsername(principal.getName());
+        return thumbnailService.serveThumbnail(user, fileId)
+                               .map(resource -> ResponseEntity.ok().contentType(MediaType.IMAGE_JPEG).body(resource))
+                               .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    // HELPER OPERATIONS
+
+    // small uploads are cheap, only large ones compete for upload slots
+    private <T> T withUploadSlot(User user, MultipartFile[] files, Supplier<T> upload) {
+        long totalBytes = Stream.of(files).mapToLong(MultipartFile::getSize).sum();
+        if(totalBytes < largeUploadBytes)
+            return upload.get();
+
+        try(HeavyOperationScheduler.Permit permit = heavyOperationScheduler.acquire(HeavyOperationScheduler.Kind.UPLOAD, user.getUsername())) {
+            return upload.get();
+        }
+    }
+
+    private String etag(UUID id, long version, String variant) {
+        return "\"" + id + "-" + version + (variant == null ? "" : "-" + variant) + "\"";
+    }
+
+    private long toEpochMillis(LocalDateTime time) {
+        return time == null ? -1 : time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    // e.g. "gzip, deflate, br" or "gzip;q=1.0, identity; q=0.5, *;q=0"
+    private boolean acceptsGzip(String acceptEncoding) {
+        if(acceptEncoding == null)
+            return false;
+
+        for(String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.trim().split(";");
+            String name = parts[0].trim();
+            if(!name.equalsIgnoreCase("gzip") && !name.equals("*"))
+                continue;
+
+            boolean rejected = parts.length > 1 && parts[1].trim().replace(" ", "").matches("q=0(\\.0*)?");
+            return !rejected;
+        }
+
+        return false;
+    }
 
 }
@@ -0,0 +1,17 @@
+package edu.myrza.todoapp.event;
+
+/*
+*  Published by ChangeJournalService when new journal entries are written for a user.
+* */
+
+import edu.myrza.todoapp.model.entity.User;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public class ChangesRecordedEvent {
+
+    private final User user;
+
+}
@@ -0,0 +1,19 @@
+package edu.myrza.todoapp.event;
+
+/*
+*  Published by FileService when files are deleted or their content is replaced.
+* */
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.Collection;
+import java.util.UUID;
+
+@Getter
+@AllArgsConstructor
+public class FileContentsChangedEvent {
+
+    private final Collection<UUID> fileIds;
+
+}
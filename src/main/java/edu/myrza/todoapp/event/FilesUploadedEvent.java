@@ -0,0 +1,22 @@
+package edu.myrza.todoapp.event;
+
+/*
+*  Published by FileService.uploadFiles. Listeners that do heavy post-processing should listen
+*  with @TransactionalEventListener so they only see files whose records were actually committed.
+* */
+
+import edu.myrza.todoapp.model.entity.FileRecord;
+import edu.myrza.todoapp.model.entity.User;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+@Getter
+@AllArgsConstructor
+public class FilesUploadedEvent {
+
+    private final User owner;
+    private final List<FileRecord> files;
+
+}
@@ -0,0 +1,20 @@
+package edu.myrza.todoapp.event;
+
+/*
+*  Published by FileService whenever direct children of the folders are added, removed, renamed or moved
+*  (i.e. whenever folders' versions are bumped).
+* */
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.Collection;
+import java.util.UUID;
+
+@Getter
+@AllArgsConstructor
+public class FoldersChangedEvent {
+
+    private final Collection<UUID> folderIds;
+
+}
@@ -8,13 +8,29 @@ package edu.myrza.todoapp.exceptions;
 
 import lombok.AllArgsConstructor;
 import lombok.Getter;
+import org.springframework.http.HttpStatus;
 
 @Getter
 @AllArgsConstructor
 public class BussinesException extends RuntimeException {
 
     public enum Code {
-        AUTH_001 // Authentication failed (incorrect username or password)
+        AUTH_001(HttpStatus.UNAUTHORIZED), // Authentication failed (incorrect username or password)
+        QUOTA_001(HttpStatus.INSUFFICIENT_STORAGE), // Upload would exceed user's storage quota
+        PATH_001(HttpStatus.BAD_REQUEST), // Invalid relative path of an uploaded file (empty, '..' segments or too long names)
+        ARCHIVE_001(HttpStatus.BAD_REQUEST), // Archive can't be extracted (malformed, too many entries, too big or suspiciously well compressed)
+        DELTA_001(HttpStatus.CONFLICT), // File has been changed since its signature was taken
+        DELTA_002(HttpStatus.BAD_REQUEST); // Delta is malformed or the reconstructed file doesn't match the declared size/hash
+
+        private final HttpStatus status;
+
+        Code(HttpStatus status) {
+            this.status = status;
+        }
+
+        public HttpStatus getStatus() {
+            return status;
+        }
     }
 
     private Code code;
@@ -0,0 +1,19 @@
+package edu.myrza.todoapp.exceptions;
+
+/*
+*  Thrown when the system refuses to take on more heavy work (archive builds, big uploads) right now.
+*  The client gets '503 Service Unavailable' with 'Retry-After' and is expected to try again later.
+* */
+
+import lombok.Getter;
+
+@Getter
+public class ServiceOverloadedException extends RuntimeException {
+
+    private final long retryAfterSeconds;
+
+    public ServiceOverloadedException(String msg, long retryAfterSeconds) {
+        super(msg);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+}
@@ -1,5 +1,6 @@
 package edu.myrza.todoapp.filter;
 
+import edu.myrza.todoapp.service.TokenRevocationService;
 import edu.myrza.todoapp.service.UserService;
 import edu.myrza.todoapp.util.JwtUtil;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -22,11 +23,13 @@ public class JwtRequestFilter extends OncePerRequestFilter {
 
     private UserDetailsService userDetailsService;
     private JwtUtil jwtUtil;
+    private TokenRevocationService tokenRevocationService;
 
     @Autowired
-    public JwtRequestFilter(UserService userDetailsService, JwtUtil jwtUtil) {
+    public JwtRequestFilter(UserService userDetailsService, JwtUtil jwtUtil, TokenRevocationService tokenRevocationService) {
         this.userDetailsService = userDetailsService;
         this.jwtUtil = jwtUtil;
+        this.tokenRevocationService = tokenRevocationService;
     }
 
     @Override
@@ -48,7 +51,8 @@ public class JwtRequestFilter extends OncePerRequestFilter {
             //This part smells
             if(username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
                 UserDetails userDetails = userDetailsService.loadUserByUsername(username);
-                if(jwtUtil.validateToken(jwtToken, userDetails)) {
+                // revocation check goes last, it is the only one that may need a db lookup
+                if(jwtUtil.validateToken(jwtToken, userDetails) && !tokenRevocationService.isRevoked(jwtToken)) {
                     UsernamePasswordAuthenticationToken usernamePasswordAuthenticationToken = new UsernamePasswordAuthenticationToken(
                             userDetails,
                             null,
@@ -0,0 +1,76 @@
+package edu.myrza.todoapp.filter;
+
+/*
+*  Counts sql statements issued by every http request and logs requests that go over 'query-budget.max-statements',
+*  together with the most repeated statement (usually the culprit of an N+1 pattern).
+*  Statement and row counts are also published as 'http.request.sql.statements' and 'http.request.sql.rows'.
+*
+*  Only work done on the request thread is counted, async parts (long-polls, streamed bodies) are not.
+* */
+
+import edu.myrza.todoapp.util.QueryStats;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.Map;
+
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class QueryBudgetFilter extends OncePerRequestFilter {
+
+    private static final Logger log = LoggerFactory.getLogger(QueryBudgetFilter.class);
+
+    private final MeterRegistry meterRegistry;
+    private final long maxStatements;
+
+    @Autowired
+    public QueryBudgetFilter(MeterRegistry meterRegistry, @Value("${query-budget.max-statements:30}") long maxStatements) {
+        this.meterRegistry = meterRegistry;
+        this.maxStatements = maxStatements;
+    }
+
+    @Override
+    protected void doFilterInternal(
+            HttpServletRequest request,
+            HttpServletResponse response,
+            FilterChain filterChain) throws ServletException, IOException
+    {
+        try(QueryStats stats = QueryStats.start()) {
+            filterChain.doFilter(request, response);
+            report(request, stats);
+        }
+    }
+
+    private void report(HttpServletRequest request, QueryStats stats) {
+
+        // uri template (e.g. '/folder/{folderId}/content') keeps the number of tags bounded
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        String uri = pattern == null ? "UNKNOWN" : pattern.toString();
+
+        DistributionSummary.builder("http.request.sql.statements").tag("uri", uri).register(meterRegistry).record(stats.getStatements());
+        DistributionSummary.builder("http.request.sql.rows").tag("uri", uri).register(meterRegistry).record(stats.getRows());
+
+        if(stats.getStatements() <= maxStatements)
+            return;
+
+        Map.Entry<String, Integer> mostRepeated = stats.mostRepeated().orElse(null);
+        log.warn("{} {} issued {} sql statements (budget {}), fetched {} rows, spent {} ms in db. Most repeated ({}x): {}",
+                request.getMethod(), request.getRequestURI(), stats.getStatements(), maxStatements, stats.getRows(), stats.getElapsedMillis(),
+                mostRepeated == null ? 0 : mostRepeated.getValue(), mostRepeated == null ? "-" : mostRepeated.getKey());
+    }
+
+}
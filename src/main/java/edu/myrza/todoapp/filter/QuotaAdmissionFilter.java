@@ -0,0 +1,86 @@
+package edu.myrza.todoapp.filter;
+
+/*
+*  Rejects uploads that can't fit into the user's remaining quota before their multipart body is read.
+*
+*  Multipart bodies are parsed (and spooled to disk) before the controller is invoked, so the reservation done by
+*  FileService comes too late to spare that I/O. The declared Content-Length is compared with the remaining quota
+*  instead, clients sending 'Expect: 100-continue' don't even transmit the body then.
+*  Requests without a Content-Length (chunked) pass, FileService's reservation stays the authoritative check.
+*  Archives are not checked here, their extracted size isn't known from the request.
+* */
+
+import edu.myrza.todoapp.exceptions.BussinesException;
+import edu.myrza.todoapp.model.entity.User;
+import edu.myrza.todoapp.service.QuotaService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.security.SecurityProperties;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+@Component
+@Order(SecurityProperties.DEFAULT_FILTER_ORDER + 1) // right after spring security, the user must be known
+public class QuotaAdmissionFilter extends OncePerRequestFilter {
+
+    // boundaries and part headers, generous enough for a few hundred files per request
+    static final long MULTIPART_OVERHEAD = 64 * 1024;
+
+    private static final String[] UPLOAD_PATHS = { "/folder/*/upload", "/folder/*/upload-tree" };
+
+    private final QuotaService quotaService;
+    private final AntPathMatcher pathMatcher = new AntPathMatcher();
+
+    @Autowired
+    public QuotaAdmissionFilter(QuotaService quotaService) {
+        this.quotaService = quotaService;
+    }
+
+    @Override
+    protected void doFilterInternal(
+            HttpServletRequest request,
+            HttpServletResponse response,
+            FilterChain filterChain) throws ServletException, IOException
+    {
+        long contentLength = request.getContentLengthLong();
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+
+        if(contentLength > MULTIPART_OVERHEAD
+                && isUpload(request)
+                && authentication != null
+                && authentication.getPrincipal() instanceof User
+                && contentLength - MULTIPART_OVERHEAD > quotaService.remaining((User) authentication.getPrincipal()))
+        {
+            BussinesException.Code code = BussinesException.Code.QUOTA_001;
+            response.setStatus(code.getStatus().value());
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            response.getWriter().write("{\"code\":\"" + code.name() + "\"}");
+            return;
+        }
+
+        filterChain.doFilter(request, response);
+    }
+
+    private boolean isUpload(HttpServletRequest request) {
+        if(!HttpMethod.POST.matches(request.getMethod()))
+            return false;
+
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        for(String uploadPath : UPLOAD_PATHS)
+            if(pathMatcher.match(uploadPath, path))
+                return true;
+        return false;
+    }
+
+}
@@ -0,0 +1,21 @@
+package edu.myrza.todoapp.model.dto.audit;
+
+import edu.myrza.todoapp.model.enums.AuditAction;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+@Getter
+@Setter
+public class AuditEventDto {
+
+    private UUID id;
+    private String username;
+    private AuditAction action;
+    private UUID fileId;
+    private String name;
+    private LocalDateTime time;
+
+}
@@ -0,0 +1,17 @@
+package edu.myrza.todoapp.model.dto.audit;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+import java.util.UUID;
+
+@Getter
+@AllArgsConstructor
+public class AuditEventsResponse {
+
+    // pass it as 'before' to get the next (older) page, null if there are no older events
+    private final UUID cursor;
+    private final List<AuditEventDto> events;
+
+}
@@ -3,6 +3,8 @@ package edu.myrza.todoapp.model.dto.auth;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 
+import java.util.UUID;
+
 @Getter
 @AllArgsConstructor
 public class LoginResponse {
@@ -10,6 +12,6 @@ public class LoginResponse {
     private final String username;
     private final String email;
     private final String token;
-    private final String rootFolderId;
+    private final UUID rootFolderId;
 
 }
@@ -3,11 +3,13 @@ package edu.myrza.todoapp.model.dto.auth;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 
+import java.util.UUID;
+
 @Getter
 @AllArgsConstructor
 public class RegistrationResponse {
     private final String username;
     private final String email;
     private final String token;
-    private final String rootFolderId;
+    private final UUID rootFolderId;
 }
@@ -0,0 +1,24 @@
+package edu.myrza.todoapp.model.dto.changes;
+
+import edu.myrza.todoapp.model.enums.ChangeType;
+import edu.myrza.todoapp.model.enums.FileType;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+@Getter
+@Setter
+public class ChangeDto {
+
+    private long seq;
+    private ChangeType type;
+    private UUID fileId;
+    private FileType fileType;
+    private UUID parentId;
+    private String name;
+    private long size; // in bytes
+    private LocalDateTime time;
+
+}
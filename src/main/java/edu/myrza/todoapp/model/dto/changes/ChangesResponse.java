@@ -0,0 +1,18 @@
+package edu.myrza.todoapp.model.dto.changes;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+@Getter
+@AllArgsConstructor
+public class ChangesResponse {
+
+    // pass it as 'since' in the next request
+    private final long cursor;
+    // if true there are more changes after 'cursor', ask again right away
+    private final boolean hasMore;
+    private final List<ChangeDto> changes;
+
+}
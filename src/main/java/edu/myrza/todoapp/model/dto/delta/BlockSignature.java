@@ -0,0 +1,19 @@
+package edu.myrza.todoapp.model.dto.delta;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class BlockSignature {
+
+    // RollingChecksum of the block
+    private int weak;
+    // md5 of the block (hex)
+    private String strong;
+
+}
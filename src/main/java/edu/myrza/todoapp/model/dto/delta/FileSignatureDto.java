@@ -0,0 +1,22 @@
+package edu.myrza.todoapp.model.dto.delta;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+@Getter
+@Setter
+public class FileSignatureDto {
+
+    private UUID fileId;
+    // a delta must be applied to this version of the file
+    private long version;
+    private long size;
+    private int blockSize;
+    // i-th signature covers bytes [i * blockSize, (i + 1) * blockSize), the last block may be shorter
+    private List<BlockSignature> blocks = new ArrayList<>();
+
+}
@@ -0,0 +1,27 @@
+package edu.myrza.todoapp.model.dto.files;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+@Getter
+@Setter
+public class ArchiveJobDto {
+
+    public enum Status { QUEUED, RUNNING, DONE, FAILED }
+
+    private UUID id;
+    private Status status;
+    // set for FAILED jobs
+    private String failureReason;
+    private long bytesDone;
+    private long bytesTotal;
+    private long entriesDone;
+    private long entriesTotal;
+    private LocalDateTime createdAt;
+    // when the finished archive is going to be deleted
+    private LocalDateTime expiresAt;
+
+}
@@ -0,0 +1,17 @@
+package edu.myrza.todoapp.model.dto.files;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+@Getter
+@Setter
+public class CopyFilesReq {
+
+    private UUID destId;
+    private List<UUID> fileIds = new ArrayList<>();
+
+}
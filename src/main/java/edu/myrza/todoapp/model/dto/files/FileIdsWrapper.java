@@ -5,11 +5,12 @@ import lombok.Setter;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.UUID;
 
 @Getter
 @Setter
 public class FileIdsWrapper {
 
-    private List<String> fileIds = new ArrayList<>();
+    private List<UUID> fileIds = new ArrayList<>();
 
 }
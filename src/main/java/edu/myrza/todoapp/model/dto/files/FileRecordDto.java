@@ -5,15 +5,18 @@ import lombok.Getter;
 import lombok.Setter;
 
 import java.time.LocalDateTime;
+import java.util.UUID;
 
 @Getter
 @Setter
 public class FileRecordDto {
 
-    private String id;
+    private UUID id;
     private String name;
     private LocalDateTime lastUpdate;
     private FileType type;
     private long size; // in bytes
+    // null for subfolders in folder listings (see FileService.toListingDto)
+    private Long version;
 
 }
@@ -0,0 +1,16 @@
+package edu.myrza.todoapp.model.dto.files;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.List;
+
+// A folder and its direct children as of the same version, 'content' is null for conditional requests answered with 304
+@Getter
+@Setter
+public class FolderContentDto {
+
+    private FileRecordDto folder;
+    private List<FileRecordDto> content;
+
+}
@@ -5,13 +5,14 @@ import lombok.Setter;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.UUID;
 
 @Getter
 @Setter
 public class MoveFilesReq {
 
-    private String srcId;
-    private String destId;
-    private List<String> fileIds = new ArrayList<>();
+    private UUID srcId;
+    private UUID destId;
+    private List<UUID> fileIds = new ArrayList<>();
 
 }
@@ -0,0 +1,35 @@
+package edu.myrza.todoapp.model.entity;
+
+/*
+    Base of entities whose (uuid) ids are assigned by the application.
+
+    Spring Data treats an entity with a non-null id as an existing one and 'merges' it on save(),
+    which costs an extra select per row. Here an entity counts as new until it has been persisted or loaded,
+    so saveAll() of freshly created rows is a plain (batched) insert.
+*/
+
+import org.springframework.data.domain.Persistable;
+
+import javax.persistence.MappedSuperclass;
+import javax.persistence.PostLoad;
+import javax.persistence.PostPersist;
+import javax.persistence.Transient;
+import java.util.UUID;
+
+@MappedSuperclass
+public abstract class AssignedIdEntity implements Persistable<UUID> {
+
+    @Transient
+    private boolean persisted;
+
+    @Override
+    public boolean isNew() {
+        return !persisted;
+    }
+
+    @PostLoad
+    @PostPersist
+    void markPersisted() {
+        persisted = true;
+    }
+}
@@ -0,0 +1,46 @@
+package edu.myrza.todoapp.model.entity;
+
+/*
+    AUDIT LOG - who did what to which file, written in batches by AuditLog.
+    Ids are time ordered (see UuidGenerator), so they double as the paging cursor.
+*/
+
+import edu.myrza.todoapp.model.enums.AuditAction;
+import lombok.Getter;
+import lombok.Setter;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+@Getter
+@Setter
+
+@Entity
+@Table(name = "audit_event")
+public class AuditEvent extends AssignedIdEntity {
+
+    @Id
+    private UUID id;
+    // plain ids, so writing an event never loads the user
+    private Long userId;
+    private String username;
+    @Enumerated(EnumType.STRING)
+    private AuditAction action;
+    private UUID fileId;
+    private String name;
+    private LocalDateTime createdAt;
+
+    public AuditEvent() {}
+
+    public static AuditEvent of(User user, AuditAction action, UUID fileId, String name) {
+        AuditEvent event = new AuditEvent();
+        event.userId = user.getId();
+        event.username = user.getUsername();
+        event.action = action;
+        event.fileId = fileId;
+        event.name = name;
+        event.createdAt = LocalDateTime.now();
+        return event;
+    }
+}
@@ -0,0 +1,46 @@
+package edu.myrza.todoapp.model.entity;
+
+/*
+    Bytes of a file stored on disk. Several file records may reference the same blob (copies are metadata only),
+    'refCount' is the number of non-deleted file records referencing it. Blobs whose count drops to 0 are kept on
+    disk (like deleted file records are kept in the table), nothing purges them yet.
+*/
+
+import lombok.Getter;
+import lombok.Setter;
+
+import javax.persistence.*;
+import java.util.UUID;
+
+@Getter
+@Setter
+
+@Entity
+@Table(name = "blob")
+public class BlobRecord extends AssignedIdEntity {
+
+    @Id
+    private UUID id;
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "owner_id")
+    private User owner;
+    // original (uncompressed) size in bytes
+    private long size;
+    private int refCount;
+    // storage volume the bytes are on (see StorageVolumes)
+    private String volume;
+    // null unless the bytes are packed into a segment (see SegmentStore)
+    @Embedded
+    private SegmentEntry segment;
+
+    public BlobRecord() {}
+
+    public BlobRecord(UUID id, User owner, long size, String volume, SegmentEntry segment) {
+        this.id = id;
+        this.owner = owner;
+        this.size = size;
+        this.volume = volume;
+        this.segment = segment;
+        this.refCount = 1;
+    }
+}
@@ -0,0 +1,53 @@
+package edu.myrza.todoapp.model.entity;
+
+/*
+    CHANGE JOURNAL - one row per mutation of a user's tree, ordered by a per-user sequence ('seq').
+    Sync clients ask for everything after the last 'seq' they have seen instead of re-listing folders.
+*/
+
+import edu.myrza.todoapp.model.enums.ChangeType;
+import edu.myrza.todoapp.model.enums.FileType;
+import lombok.Getter;
+import lombok.Setter;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+@Getter
+@Setter
+
+@Entity
+@Table(name = "change_journal")
+public class ChangeRecord extends AssignedIdEntity {
+
+    @Id
+    private UUID id;
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "owner_id")
+    private User owner;
+    private long seq;
+    @Enumerated(EnumType.STRING)
+    private ChangeType changeType;
+    private UUID fileId;
+    @Enumerated(EnumType.STRING)
+    private FileType fileType;
+    // direct parent of the file after the change (null for deletions)
+    private UUID parentId;
+    private String name;
+    private long size;
+    private LocalDateTime createdAt;
+
+    public ChangeRecord() {}
+
+    public static ChangeRecord of(ChangeType changeType, FileRecord file, UUID parentId) {
+        ChangeRecord change = new ChangeRecord();
+        change.changeType = changeType;
+        change.fileId = file.getId();
+        change.fileType = file.getFileType();
+        change.parentId = parentId;
+        change.name = file.getName();
+        change.size = file.getSize();
+        return change;
+    }
+}
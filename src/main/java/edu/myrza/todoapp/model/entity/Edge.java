@@ -7,7 +7,7 @@ import lombok.NoArgsConstructor;
 import lombok.Setter;
 
 import javax.persistence.*;
-import java.io.File;
+import java.util.UUID;
 
 /*
     CLOSURE TABLE - technique for storing hierarchical structures in db
@@ -19,10 +19,10 @@ import java.io.File;
 @Table(name = "edge")
 @NoArgsConstructor
 @AllArgsConstructor
-public class Edge {
+public class Edge extends AssignedIdEntity {
 
     @Id
-    private String id;
+    private UUID id;
 
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "ancestor")
@@ -1,11 +1,16 @@
 package edu.myrza.todoapp.model.entity;
 
 import edu.myrza.todoapp.model.enums.FileType;
+import edu.myrza.todoapp.model.enums.StorageEncoding;
 import lombok.Getter;
 import lombok.Setter;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.DynamicUpdate;
 
 import javax.persistence.*;
 import java.time.LocalDateTime;
+import java.util.UUID;
 
 
 @Getter
@@ -13,10 +18,12 @@ import java.time.LocalDateTime;
 
 @Entity
 @Table(name = "file")
-public class FileRecord {
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "file") // bulk updates evict by id (see FileRepositoryImpl)
+@DynamicUpdate // "version" is bumped with bulk updates, so stale managed instances must not write it back
+public class FileRecord extends AssignedIdEntity {
 
     @Id
-    private String id;
+    private UUID id;
     private String name;
     @Column(name = "ext")
     private String extension;
@@ -29,20 +36,54 @@ public class FileRecord {
     @ManyToOne(fetch = FetchType.EAGER)
     @JoinColumn(name = "status_id")
     private Status status;
+    // stored by ordinal, V9__Create_blob.sql relies on it ('0' = FILE)
+    @Enumerated(EnumType.ORDINAL)
     private FileType fileType;
+    @Enumerated(EnumType.STRING)
+    private StorageEncoding storageEncoding = StorageEncoding.IDENTITY;
+    // file   : bumped when the content changes
+    // folder : bumped on every mutation of its direct children (add, remove, rename, move)
+    private long version;
+    // bytes of the file, shared by copies (null for folders)
+    private UUID blobId;
+    // storage volume of the blob (see StorageVolumes), copied from 'blob.volume' so reads don't need a join
+    private String volume;
+    // location of a small blob packed into a segment (see SegmentStore), copied from the blob as well
+    @Embedded
+    private SegmentEntry segment;
+    // direct parent folder (null for root folders), mirrors the DIRECT edge of the closure table
+    private UUID parentId;
 
     public FileRecord () {}
 
-    public static FileRecord createFolder(String id, String name, User owner, Status status) {
+    public static FileRecord createFolder(UUID id, String name, User owner, Status status) {
         return new FileRecord(id, name, owner, status, FileType.FOLDER);
     }
 
-    public static FileRecord createFile(String id, String name, String extension, long size, User owner, Status status) {
-        return new FileRecord(id, name, extension, size, owner, status, FileType.FILE);
+    public static FileRecord createFile(UUID id, String name, String extension, long size, User owner, Status status) {
+        FileRecord file = new FileRecord(id, name, extension, size, owner, status, FileType.FILE);
+        file.blobId = id;
+        return file;
+    }
+
+    public static FileRecord createFile(UUID id, String name, String extension, long size, StorageEncoding storageEncoding, User owner, Status status) {
+        FileRecord file = createFile(id, name, extension, size, owner, status);
+        file.storageEncoding = storageEncoding;
+        return file;
+    }
+
+    // Copy of a file/folder (not including sub files/folders), the copy of a file references the same blob
+    public static FileRecord copyOf(UUID id, FileRecord src, Status status) {
+        FileRecord copy = new FileRecord(id, src.name, src.extension, src.size, src.owner, status, src.fileType);
+        copy.storageEncoding = src.storageEncoding;
+        copy.blobId = src.blobId;
+        copy.volume = src.volume;
+        copy.segment = src.segment;
+        return copy;
     }
 
     // create folder
-    private FileRecord(String id, String name, User owner, Status status, FileType fileType) {
+    private FileRecord(UUID id, String name, User owner, Status status, FileType fileType) {
         this.id = id;
         this.name = name;
         this.owner = owner;
@@ -54,7 +95,7 @@ public class FileRecord {
         this.updatedAt = _now;
     }
 
-    private FileRecord(String id, String name, String extension, long size, User owner, Status status, FileType fileType) {
+    private FileRecord(UUID id, String name, String extension, long size, User owner, Status status, FileType fileType) {
         this.id = id;
         this.name = name;
         this.extension = extension;
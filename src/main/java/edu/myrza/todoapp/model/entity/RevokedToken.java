@@ -0,0 +1,24 @@
+package edu.myrza.todoapp.model.entity;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import java.time.LocalDateTime;
+
+@Getter
+@Setter
+
+@Entity
+@Table(name = "revoked_token")
+public class RevokedToken {
+
+    // sha-256 of the token (hex), tokens themselves aren't stored
+    @Id
+    private String tokenHash;
+    private LocalDateTime expiresAt;
+    private LocalDateTime revokedAt;
+
+}
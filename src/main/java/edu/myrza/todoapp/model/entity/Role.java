@@ -2,6 +2,8 @@ package edu.myrza.todoapp.model.entity;
 
 import lombok.Getter;
 import lombok.Setter;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.springframework.security.core.GrantedAuthority;
 
 import javax.persistence.*;
@@ -11,6 +13,7 @@ import javax.persistence.*;
 
 @Entity
 @Table(name = "role")
+@Cache(usage = CacheConcurrencyStrategy.READ_ONLY, region = "role")
 public class Role implements GrantedAuthority {
 
     public enum Code { ROLE_ADMIN, ROLE_USER };
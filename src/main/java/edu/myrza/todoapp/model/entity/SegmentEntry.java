@@ -0,0 +1,31 @@
+package edu.myrza.todoapp.model.entity;
+
+/*
+    Location of a small blob packed into a segment file (see SegmentStore): 'length' stored bytes at 'offset'.
+    Null on records whose blob is stored as a file of its own.
+*/
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.Column;
+import javax.persistence.Embeddable;
+import java.util.UUID;
+
+@Getter
+@NoArgsConstructor
+@AllArgsConstructor
+
+@Embeddable
+public class SegmentEntry {
+
+    @Column(name = "segment_id")
+    private UUID segmentId;
+    @Column(name = "segment_offset")
+    private long offset;
+    // stored (possibly compressed) bytes
+    @Column(name = "segment_length")
+    private int length;
+
+}
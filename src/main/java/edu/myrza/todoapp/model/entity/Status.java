@@ -2,6 +2,8 @@ package edu.myrza.todoapp.model.entity;
 
 import lombok.Getter;
 import lombok.Setter;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import javax.persistence.*;
 
@@ -10,6 +12,7 @@ import javax.persistence.*;
 
 @Entity
 @Table(name = "status")
+@Cache(usage = CacheConcurrencyStrategy.READ_ONLY, region = "status")
 public class Status {
 
     public enum Code { ENABLED, DISABLED, DELETED }
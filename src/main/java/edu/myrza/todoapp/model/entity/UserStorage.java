@@ -0,0 +1,32 @@
+package edu.myrza.todoapp.model.entity;
+
+/*
+    Storage usage of a user, maintained incrementally (uploads add, deletions subtract)
+    so that quota checks never have to sum sizes of user's files.
+*/
+
+import lombok.Getter;
+import lombok.Setter;
+
+import javax.persistence.*;
+
+@Getter
+@Setter
+
+@Entity
+@Table(name = "user_storage")
+public class UserStorage {
+
+    @Id
+    private Long userId;
+    // bytes of non-deleted files plus bytes reserved by uploads in progress
+    private long usedBytes;
+    // null means 'file.storage.quota-bytes'
+    private Long quotaBytes;
+
+    public UserStorage() {}
+
+    public UserStorage(Long userId) {
+        this.userId = userId;
+    }
+}
@@ -0,0 +1,3 @@
+package edu.myrza.todoapp.model.enums;
+
+public enum AuditAction { CREATE_FOLDER, UPLOAD, EXTRACT, COPY, MOVE, RENAME, MODIFY, DELETE, DOWNLOAD }
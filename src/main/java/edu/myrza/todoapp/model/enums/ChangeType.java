@@ -0,0 +1,3 @@
+package edu.myrza.todoapp.model.enums;
+
+public enum ChangeType { CREATED, RENAMED, MOVED, DELETED, MODIFIED }
@@ -0,0 +1,4 @@
+package edu.myrza.todoapp.model.enums;
+
+// How a file's bytes are stored on disk
+public enum StorageEncoding { IDENTITY, GZIP }
@@ -0,0 +1,11 @@
+package edu.myrza.todoapp.repos;
+
+import edu.myrza.todoapp.model.entity.AuditEvent;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.UUID;
+
+@Repository
+public interface AuditEventRepository extends JpaRepository<AuditEvent, UUID>, AuditEventRepositoryCustom {
+}
@@ -0,0 +1,14 @@
+package edu.myrza.todoapp.repos;
+
+import edu.myrza.todoapp.model.entity.AuditEvent;
+import edu.myrza.todoapp.model.enums.AuditAction;
+
+import java.util.List;
+import java.util.UUID;
+
+public interface AuditEventRepositoryCustom {
+
+    // Newest first, events older than 'before'. Null filters match everything.
+    List<AuditEvent> serveEvents(Long userId, UUID fileId, AuditAction action, UUID before, int limit);
+
+}
@@ -0,0 +1,51 @@
+package edu.myrza.todoapp.repos;
+
+/*
+*  Audit queries have optional filters, so they are built with the criteria api instead of one @Query per combination
+*  (null parameters of 'is null' checks can't be typed by postgres). The keyset condition on the time ordered id
+*  avoids offsets and count queries.
+* */
+
+import edu.myrza.todoapp.model.entity.AuditEvent;
+import edu.myrza.todoapp.model.enums.AuditAction;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+public class AuditEventRepositoryImpl implements AuditEventRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<AuditEvent> serveEvents(Long userId, UUID fileId, AuditAction action, UUID before, int limit) {
+
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<AuditEvent> query = cb.createQuery(AuditEvent.class);
+        Root<AuditEvent> event = query.from(AuditEvent.class);
+
+        List<Predicate> where = new ArrayList<>();
+        if(userId != null)
+            where.add(cb.equal(event.get("userId"), userId));
+        if(fileId != null)
+            where.add(cb.equal(event.get("fileId"), fileId));
+        if(action != null)
+            where.add(cb.equal(event.get("action"), action));
+        if(before != null)
+            where.add(cb.lessThan(event.get("id"), before));
+
+        query.select(event)
+             .where(where.toArray(new Predicate[0]))
+             .orderBy(cb.desc(event.get("id")));
+
+        return entityManager.createQuery(query).setMaxResults(limit).getResultList();
+    }
+
+}
@@ -0,0 +1,57 @@
+package edu.myrza.todoapp.repos;
+
+import edu.myrza.todoapp.model.entity.BlobRecord;
+import edu.myrza.todoapp.model.entity.User;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+@Repository
+public interface BlobRepository extends JpaRepository<BlobRecord, UUID> {
+
+    @Modifying
+    @Query("update BlobRecord b set b.refCount = b.refCount + :delta where b.id in :ids")
+    int addRefs(@Param("ids") Collection<UUID> ids, @Param("delta") int delta);
+
+    // Size of the blobs (among 'ids') that aren't referenced by any live file anymore
+    @Query("select coalesce(sum(b.size), 0) from BlobRecord b where b.id in :ids and b.refCount <= 0")
+    long sumUnreferencedSize(@Param("ids") Collection<UUID> ids);
+
+    // [blob id, owner username] of the live blobs stored as files on a volume, in id order (keyset paging by 'after')
+    @Query("select b.id, b.owner.username from BlobRecord b " +
+           "where b.volume = :volume and b.refCount > 0 and b.segment.segmentId is null and b.id > :after order by b.id")
+    List<Object[]> serveLiveOnVolume(@Param("volume") String volume, @Param("after") UUID after, Pageable pageable);
+
+    @Modifying
+    @Query("update BlobRecord b set b.volume = :to where b.id = :id and b.volume = :from")
+    int relocate(@Param("id") UUID id, @Param("from") String from, @Param("to") String to);
+
+    Optional<BlobRecord> findByIdAndOwner(UUID id, User owner);
+
+    // [blob id, volume, segment id, segment offset, segment length] read from the locked rows: VolumeRebalancer and
+    // SegmentCompactor can't move the blobs until the caller's transaction ends. Locked in id order, so that
+    // concurrent callers don't deadlock.
+    @Query(value = "select cast(id as varchar), volume, cast(segment_id as varchar), segment_offset, segment_length " +
+                   "from blob where id in :ids order by id for update",
+           nativeQuery = true)
+    List<Object[]> lockLocations(@Param("ids") Collection<UUID> ids);
+
+    // Live entries of a segment, packed blobs that have lost all their references are dropped by compaction
+    @Query("select b from BlobRecord b where b.segment.segmentId = :segmentId and b.refCount > 0")
+    List<BlobRecord> serveLiveInSegment(@Param("segmentId") UUID segmentId);
+
+    @Modifying
+    @Query("update BlobRecord b set b.segment.segmentId = :segmentId, b.segment.offset = :offset, b.segment.length = :length " +
+           "where b.id = :id and b.segment.segmentId = :from")
+    int relocateEntry(@Param("id") UUID id, @Param("from") UUID from, @Param("segmentId") UUID segmentId,
+                      @Param("offset") long offset, @Param("length") int length);
+
+}
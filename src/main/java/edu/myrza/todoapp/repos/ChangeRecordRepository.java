@@ -0,0 +1,36 @@
+package edu.myrza.todoapp.repos;
+
+import edu.myrza.todoapp.model.entity.ChangeRecord;
+import edu.myrza.todoapp.model.entity.User;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import javax.persistence.QueryHint;
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface ChangeRecordRepository extends JpaRepository<ChangeRecord, UUID> {
+
+    List<ChangeRecord> findByOwnerAndSeqGreaterThanOrderBySeq(User owner, long seq, Pageable pageable);
+
+    // Reserving sequence numbers locks the user's row until the transaction ends.
+    // That way journal entries of one user become visible in 'seq' order, and a client never skips an entry
+    // that was committed after it had already seen a greater 'seq'.
+    // Without a query space hibernate drops every second-level cache region on each native update. 'change_seq' is a
+    // space no entity uses: the column isn't mapped on User, so the 'user' region (and the cached findByUsername) must
+    // survive the journal writes that every mutation makes. Don't declare "usr" here.
+    @Modifying
+    @QueryHints(@QueryHint(name = org.hibernate.annotations.QueryHints.NATIVE_SPACES, value = "change_seq"))
+    @Query(value = "update usr set change_seq = change_seq + :count where id = :userId", nativeQuery = true)
+    int reserveSeq(@Param("userId") Long userId, @Param("count") long count);
+
+    @Query(value = "select change_seq from usr where id = :userId", nativeQuery = true)
+    long serveLastSeq(@Param("userId") Long userId);
+
+}
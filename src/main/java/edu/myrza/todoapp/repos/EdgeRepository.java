@@ -2,6 +2,7 @@ package edu.myrza.todoapp.repos;
 
 import edu.myrza.todoapp.model.entity.Edge;
 import edu.myrza.todoapp.model.entity.FileRecord;
+import edu.myrza.todoapp.model.entity.User;
 import edu.myrza.todoapp.model.enums.EdgeType;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
@@ -9,23 +10,54 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Set;
+import java.util.UUID;
 
-
+// 'edge' and 'file' are partitioned by owner, every query names the owner of both (edgeOwner and the joined files'
+// owner), so postgres only looks into that owner's partitions
 @Repository
-public interface EdgeRepository extends JpaRepository<Edge, String> {
-
-    @Query("select e.ancestor from Edge e where e.descendant.id = :descendantId")
-    Set<FileRecord> serveAncestors(@Param("descendantId") String fileId);
-
-    @Query("select e.descendant from Edge e where e.ancestor.id = :ancestorId and e.descendant.status.code <> 'DELETED' ")
-    Set<FileRecord> serveAllDescendants(@Param("ancestorId") String ancestorId);
-
-    @Query("select e.descendant from Edge e where e.ancestor.id = :folderId and e.descendant.status.code <> 'DELETED' and e.edgeType = :edgeType")
-    List<FileRecord> serveDescendants(@Param("folderId") String folderId, @Param("edgeType") EdgeType edgeType);
-
-    void deleteByAncestorInAndDescendantIn(Set<FileRecord> ancestors, Set<FileRecord> descendants);
-
-    void deleteByDescendant(FileRecord descendant);
+public interface EdgeRepository extends JpaRepository<Edge, UUID> {
+
+    @Query("select a from Edge e join e.ancestor a where e.edgeOwner = :owner and a.owner = :owner and e.descendant.id = :descendantId")
+    Set<FileRecord> serveAncestors(@Param("owner") User owner, @Param("descendantId") UUID fileId);
+
+    @Query("select distinct e.ancestor.id from Edge e where e.edgeOwner = :owner and e.descendant.id in :descendantIds")
+    Set<UUID> serveAncestorIds(@Param("owner") User owner, @Param("descendantIds") Collection<UUID> descendantIds);
+
+    @Query("select d from Edge e join e.descendant d " +
+           "where e.edgeOwner = :owner and d.owner = :owner and e.ancestor.id = :ancestorId and d.status.code <> 'DELETED' ")
+    Set<FileRecord> serveAllDescendants(@Param("owner") User owner, @Param("ancestorId") UUID ancestorId);
+
+    @Query("select d from Edge e join e.descendant d " +
+           "where e.edgeOwner = :owner and d.owner = :owner and e.ancestor.id = :folderId and d.status.code <> 'DELETED' and e.edgeType = :edgeType")
+    List<FileRecord> serveDescendants(@Param("owner") User owner, @Param("folderId") UUID folderId, @Param("edgeType") EdgeType edgeType);
+
+    @Query("select e.ancestor.id from Edge e " +
+           "where e.edgeOwner = :owner and e.descendant.id in :descendantIds and e.edgeType = edu.myrza.todoapp.model.enums.EdgeType.DIRECT")
+    Set<UUID> serveParentIds(@Param("owner") User owner, @Param("descendantIds") Collection<UUID> descendantIds);
+
+    // (ancestor id, descendant id, edge type) of every edge inside the subtree rooted at 'rootId' (deleted files included)
+    @Query("select e.ancestor.id, e.descendant.id, e.edgeType from Edge e " +
+           "where e.edgeOwner = :owner " +
+           "and e.descendant.id in (select d.descendant.id from Edge d where d.edgeOwner = :owner and d.ancestor.id = :rootId) " +
+           "and (e.ancestor.id = :rootId or e.ancestor.id in (select a.descendant.id from Edge a where a.edgeOwner = :owner and a.ancestor.id = :rootId))")
+    List<Object[]> serveSubtreeEdges(@Param("owner") User owner, @Param("rootId") UUID rootId);
+
+    @Modifying
+    @Query("delete from Edge e where e.edgeOwner = :owner and e.ancestor in :ancestors and e.descendant in :descendants")
+    int deleteBetween(@Param("owner") User owner, @Param("ancestors") Collection<FileRecord> ancestors,
+                      @Param("descendants") Collection<FileRecord> descendants);
+
+    @Modifying
+    @Query("delete from Edge e where e.edgeOwner = :owner and e.descendant = :descendant")
+    int deleteByDescendant(@Param("owner") User owner, @Param("descendant") FileRecord descendant);
+
+    // Takes transaction scoped advisory locks on 'keys' one after another in the given order (see SubtreeLocks),
+    // exclusive ones on keys listed in 'exclusiveKeys' and shared ones on the rest. Returns the number of locks taken.
+    @Query(value = "select count(*) from (" +
+                   "select case when k = any(array[:exclusiveKeys]) then pg_advisory_xact_lock(k) else pg_advisory_xact_lock_shared(k) end " +
+                   "from unnest(array[:keys]) with ordinality as l(k, n) order by n) locks", nativeQuery = true)
+    long lockAdvisory(@Param("keys") List<Long> keys, @Param("exclusiveKeys") List<Long> exclusiveKeys);
 }
@@ -1,8 +1,45 @@
 package edu.myrza.todoapp.repos;
 
 import edu.myrza.todoapp.model.entity.FileRecord;
+import edu.myrza.todoapp.model.entity.Status;
+import edu.myrza.todoapp.model.entity.User;
+import edu.myrza.todoapp.model.enums.FileType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+// 'file' is partitioned by owner: lookups name the owner, so only that owner's partition is searched (findById
+// searches all of them). It also keeps users from reaching each other's files by id.
 @Repository
-public interface FileRepository extends JpaRepository<FileRecord, String> { }
+public interface FileRepository extends JpaRepository<FileRecord, UUID>, FileRepositoryCustom {
+
+    // user's root folder is the only file/folder without a parent
+    @Query("select f.id from FileRecord f where f.owner = :owner and f.parentId is null")
+    Optional<UUID> findRootFolderId(@Param("owner") User owner);
+
+    List<FileRecord> findAllByIdInAndOwner(Collection<UUID> ids, User owner);
+
+    // (parent_id, name) index probe, used to merge imported folders into existing ones
+    Optional<FileRecord> findFirstByOwnerAndParentIdAndNameAndFileTypeAndStatus(User owner, UUID parentId, String name, FileType fileType, Status status);
+
+    // Walks 'path' (segments separated by '/') down from the owner's root folder, one (parent_id, name) index probe
+    // per segment, all within a single round-trip. Deleted files/folders are not matched.
+    @Query(value = "with recursive walk(id, depth) as ( " +
+                   "    select f.id, 0 from file f where f.owner_id = :ownerId and f.parent_id is null " +
+                   "    union all " +
+                   "    select f.id, w.depth + 1 from walk w " +
+                   "        join file f on f.owner_id = :ownerId and f.parent_id = w.id and f.name = (string_to_array(:path, '/'))[w.depth + 1] " +
+                   "        join status s on s.id = f.status_id " +
+                   "    where w.depth < :depth and s.code <> 'DELETED' " +
+                   ") " +
+                   "select cast(id as varchar) from walk where depth = :depth limit 1",
+           nativeQuery = true)
+    Optional<String> resolvePath(@Param("ownerId") Long ownerId, @Param("path") String path, @Param("depth") int depth);
+
+}
@@ -0,0 +1,24 @@
+package edu.myrza.todoapp.repos;
+
+import edu.myrza.todoapp.model.entity.FileRecord;
+import edu.myrza.todoapp.model.entity.User;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Optional;
+import java.util.UUID;
+
+public interface FileRepositoryCustom {
+
+    Optional<FileRecord> findByIdAndOwner(UUID id, User owner);
+
+    // Points the file to new content, only if nobody has changed it since 'baseVersion'
+    int replaceBlob(User owner, UUID id, long baseVersion, UUID blobId, String volume, long size, LocalDateTime now);
+
+    int relocateBlob(UUID blobId, String volume);
+
+    int relocateEntry(UUID blobId, UUID segmentId, long offset, int length);
+
+    int bumpVersions(User owner, Collection<UUID> ids, LocalDateTime now);
+
+}
@@ -0,0 +1,118 @@
+package edu.myrza.todoapp.repos;
+
+/*
+*  File records live in the second-level cache (region 'file').
+*
+*  A record that is cached is served by id without a query, the others are looked up in their owner's partition
+*  only (and cached on the way).
+*
+*  Hibernate drops the whole region on every jpql bulk update of FileRecord, and version bumps run on almost every
+*  mutation, so the cache would hardly ever be warm. Bulk updates are native statements instead, they report the
+*  rows they have changed ('returning') and only those are evicted: right away and once more after the transaction
+*  has ended, in case a concurrent load has put back the old state in between. Results of queries over 'file'
+*  must not be put into the query cache, these statements don't invalidate it.
+* */
+
+import edu.myrza.todoapp.model.entity.FileRecord;
+import edu.myrza.todoapp.model.entity.User;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.persistence.Cache;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.Query;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.stream.Collectors;
+
+public class FileRepositoryImpl implements FileRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public Optional<FileRecord> findByIdAndOwner(UUID id, User owner) {
+
+        if(entityManager.getEntityManagerFactory().getCache().contains(FileRecord.class, id))
+            return Optional.ofNullable(entityManager.find(FileRecord.class, id))
+                           .filter(file -> file.getOwner().getId().equals(owner.getId()));
+
+        return entityManager.createQuery("select f from FileRecord f where f.id = :id and f.owner = :owner", FileRecord.class)
+                            .setParameter("id", id)
+                            .setParameter("owner", owner)
+                            .getResultList()
+                            .stream()
+                            .findFirst();
+    }
+
+    @Override
+    public int replaceBlob(User owner, UUID id, long baseVersion, UUID blobId, String volume, long size, LocalDateTime now) {
+        return update(entityManager.createNativeQuery(
+                "update file set blob_id = :blobId, volume = :volume, size = :size, version = version + 1, updated_at = :now, " +
+                "segment_id = null, segment_offset = null, segment_length = null " +
+                "where owner_id = :ownerId and id = :id and version = :baseVersion returning cast(id as varchar)")
+                .setParameter("blobId", blobId)
+                .setParameter("volume", volume)
+                .setParameter("size", size)
+                .setParameter("now", now)
+                .setParameter("ownerId", owner.getId())
+                .setParameter("id", id)
+                .setParameter("baseVersion", baseVersion));
+    }
+
+    @Override
+    public int relocateBlob(UUID blobId, String volume) {
+        return update(entityManager.createNativeQuery(
+                "update file set volume = :volume " +
+                "where owner_id = (select owner_id from blob where id = :blobId) and blob_id = :blobId returning cast(id as varchar)")
+                .setParameter("volume", volume)
+                .setParameter("blobId", blobId));
+    }
+
+    @Override
+    public int relocateEntry(UUID blobId, UUID segmentId, long offset, int length) {
+        return update(entityManager.createNativeQuery(
+                "update file set segment_id = :segmentId, segment_offset = :offset, segment_length = :length " +
+                "where owner_id = (select owner_id from blob where id = :blobId) and blob_id = :blobId returning cast(id as varchar)")
+                .setParameter("segmentId", segmentId)
+                .setParameter("offset", offset)
+                .setParameter("length", length)
+                .setParameter("blobId", blobId));
+    }
+
+    @Override
+    public int bumpVersions(User owner, Collection<UUID> ids, LocalDateTime now) {
+        return update(entityManager.createNativeQuery(
+                "update file set version = version + 1, updated_at = :now " +
+                "where owner_id = :ownerId and id in (:ids) returning cast(id as varchar)")
+                .setParameter("now", now)
+                .setParameter("ownerId", owner.getId())
+                .setParameter("ids", ids));
+    }
+
+    // Runs an 'update ... returning id' statement, returns the number of updated rows
+    @SuppressWarnings("unchecked")
+    private int update(Query query) {
+        // pending changes must reach the db before the statement
+        entityManager.flush();
+
+        List<UUID> updated = ((List<String>) query.getResultList()).stream().map(UUID::fromString).collect(Collectors.toList());
+        if(updated.isEmpty())
+            return 0;
+
+        Cache cache = entityManager.getEntityManagerFactory().getCache();
+        updated.forEach(id -> cache.evict(FileRecord.class, id));
+        if(TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    updated.forEach(id -> cache.evict(FileRecord.class, id));
+                }
+            });
+        }
+
+        return updated.size();
+    }
+
+}
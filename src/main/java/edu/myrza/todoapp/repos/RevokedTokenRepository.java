@@ -0,0 +1,38 @@
+package edu.myrza.todoapp.repos;
+
+import edu.myrza.todoapp.model.entity.RevokedToken;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.QueryHint;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface RevokedTokenRepository extends JpaRepository<RevokedToken, String> {
+
+    // revoking the same token twice (e.g. a retried logout) is not an error
+    @Transactional
+    @Modifying
+    @QueryHints(@QueryHint(name = org.hibernate.annotations.QueryHints.NATIVE_SPACES, value = "revoked_token"))
+    @Query(value = "insert into revoked_token (token_hash, expires_at, revoked_at) values (:tokenHash, :expiresAt, :revokedAt) " +
+                   "on conflict (token_hash) do nothing", nativeQuery = true)
+    int revoke(@Param("tokenHash") String tokenHash, @Param("expiresAt") LocalDateTime expiresAt, @Param("revokedAt") LocalDateTime revokedAt);
+
+    @Query("select t.tokenHash from RevokedToken t where t.revokedAt >= :since and t.expiresAt > :now")
+    List<String> serveRevokedSince(@Param("since") LocalDateTime since, @Param("now") LocalDateTime now);
+
+    @Query("select count(t) from RevokedToken t where t.expiresAt > :now")
+    long countUnexpired(@Param("now") LocalDateTime now);
+
+    @Transactional
+    @Modifying
+    @Query("delete from RevokedToken t where t.expiresAt <= :now")
+    int deleteExpired(@Param("now") LocalDateTime now);
+
+}
@@ -2,11 +2,15 @@ package edu.myrza.todoapp.repos;
 
 import edu.myrza.todoapp.model.entity.Status;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.QueryHint;
+
 @Repository
 public interface StatusRepository extends JpaRepository<Status, Integer> {
 
+    @QueryHints(@QueryHint(name = org.hibernate.annotations.QueryHints.CACHEABLE, value = "true"))
     Status findByCode(Status.Code code);
 
 }
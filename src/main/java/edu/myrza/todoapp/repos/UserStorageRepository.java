@@ -0,0 +1,28 @@
+package edu.myrza.todoapp.repos;
+
+import edu.myrza.todoapp.model.entity.UserStorage;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface UserStorageRepository extends JpaRepository<UserStorage, Long> {
+
+    // Admission check and reservation in one statement, returns 0 if the quota would be exceeded
+    @Modifying
+    @Query("update UserStorage s set s.usedBytes = s.usedBytes + :bytes " +
+           "where s.userId = :userId and s.usedBytes + :bytes <= coalesce(s.quotaBytes, :defaultQuota)")
+    int reserve(@Param("userId") Long userId, @Param("bytes") long bytes, @Param("defaultQuota") long defaultQuota);
+
+    @Query("select coalesce(s.quotaBytes, :defaultQuota) - s.usedBytes from UserStorage s where s.userId = :userId")
+    Optional<Long> remaining(@Param("userId") Long userId, @Param("defaultQuota") long defaultQuota);
+
+    @Modifying
+    @Query("update UserStorage s set s.usedBytes = s.usedBytes - :bytes where s.userId = :userId")
+    int release(@Param("userId") Long userId, @Param("bytes") long bytes);
+
+}
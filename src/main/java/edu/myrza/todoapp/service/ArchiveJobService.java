@@ -0,0 +1,234 @@
+package edu.myrza.todoapp.service;
+
+/*
+*  Asynchronous archive builds for selections too big to be zipped within a single request.
+*
+*  A job is submitted to a bounded background pool and keeps running if the client disconnects. The client polls
+*  the job for progress and downloads the finished archive (with range requests, so broken downloads can resume).
+*  Finished archives are deleted after 'archive-jobs.ttl-minutes'. Jobs are kept in memory of this JVM only.
+* */
+
+import edu.myrza.todoapp.exceptions.ServiceOverloadedException;
+import edu.myrza.todoapp.model.dto.files.ArchiveJobDto;
+import edu.myrza.todoapp.model.entity.User;
+import edu.myrza.todoapp.util.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+@Service
+public class ArchiveJobService {
+
+    private static final Logger log = LoggerFactory.getLogger(ArchiveJobService.class);
+
+    private final FileService fileService;
+    private final FileSystemUtil fileSystemUtil;
+    private final long ttlMinutes;
+    private final long retryAfterSeconds;
+    private final ThreadPoolExecutor workers;
+
+    private final ConcurrentMap<UUID, Job> jobs = new ConcurrentHashMap<>();
+
+    @Autowired
+    public ArchiveJobService(
+            FileService fileService,
+            FileSystemUtil fileSystemUtil,
+            @Value("${archive-jobs.workers:2}") int workerCount,
+            @Value("${archive-jobs.queue-capacity:32}") int queueCapacity,
+            @Value("${archive-jobs.ttl-minutes:1440}") long ttlMinutes,
+            @Value("${heavy-ops.retry-after-seconds:10}") long retryAfterSeconds)
+    {
+        this.fileService = fileService;
+        this.fileSystemUtil = fileSystemUtil;
+        this.ttlMinutes = ttlMinutes;
+        this.retryAfterSeconds = retryAfterSeconds;
+        this.workers = new ThreadPoolExecutor(
+                workerCount, workerCount,
+                0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    public ArchiveJobDto submit(User user, List<UUID> ids) {
+
+        List<TreeNode> nodes = fileService.serveArchiveTree(user, ids);
+
+        Job job = new Job(UuidGenerator.next(), user, nodes);
+        job.entriesTotal = countEntries(nodes);
+        job.bytesTotal = countBytes(nodes);
+        jobs.put(job.id, job);
+
+        try {
+            job.future = workers.submit(() -> run(job));
+        } catch (RejectedExecutionException ex) {
+            jobs.remove(job.id);
+            throw new ServiceOverloadedException("Too many archive jobs are queued", retryAfterSeconds);
+        }
+
+        return toDto(job);
+    }
+
+    public Optional<ArchiveJobDto> serveJob(User user, UUID jobId) {
+        return findJob(user, jobId).map(this::toDto);
+    }
+
+    // Empty if there is no such job or it isn't done yet
+    public Optional<Resource> serveArchive(User user, UUID jobId) {
+        return findJob(user, jobId)
+                .filter(job -> job.status == ArchiveJobDto.Status.DONE)
+                .map(job -> new FileSystemResource(job.target));
+    }
+
+    public boolean cancel(User user, UUID jobId) {
+        Optional<Job> optJob = findJob(user, jobId);
+        optJob.ifPresent(this::discard);
+        return optJob.isPresent();
+    }
+
+    @Scheduled(fixedDelayString = "${archive-jobs.cleanup-interval-millis:60000}")
+    public void deleteExpired() {
+        LocalDateTime now = LocalDateTime.now();
+        for(Job job : jobs.values()) {
+            if(job.expiresAt != null && job.expiresAt.isBefore(now))
+                discard(job);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workers.shutdownNow();
+        jobs.values().forEach(this::discard);
+    }
+
+    private void run(Job job) {
+        job.status = ArchiveJobDto.Status.RUNNING;
+        job.target = fileSystemUtil.tmpPath("archive-" + job.id + ".zip");
+
+        try {
+            // blobs may have moved (see VolumeRebalancer, SegmentCompactor) since the tree was loaded, each one is
+            // located right before it's read
+            fileSystemUtil.compressFiles(job.nodes, job.target, node -> fileService.locateBlob(job.user, node.getBlobId()), new ArchiveProgress() {
+                @Override
+                public void onBytes(long bytes) {
+                    job.bytesDone.addAndGet(bytes);
+                }
+
+                @Override
+                public void onEntry() {
+                    job.entriesDone.incrementAndGet();
+                }
+            });
+            job.status = ArchiveJobDto.Status.DONE;
+        } catch (IOException | RuntimeException ex) {
+            // the details may contain server paths, the client only gets the kind of failure
+            job.failureReason = Thread.currentThread().isInterrupted() ? "Cancelled" : ex.getClass().getSimpleName();
+            job.status = ArchiveJobDto.Status.FAILED;
+            deleteQuietly(job.target);
+            if(!Thread.currentThread().isInterrupted())
+                log.warn("Archive job [{}] of user [{}] failed", job.id, job.user.getUsername(), ex);
+        } finally {
+            job.nodes = null; // the tree may be huge, it isn't needed anymore
+            job.expiresAt = LocalDateTime.now().plusMinutes(ttlMinutes);
+        }
+    }
+
+    private void discard(Job job) {
+        jobs.remove(job.id);
+        if(job.future != null)
+            job.future.cancel(true);
+        deleteQuietly(job.target);
+    }
+
+    private Optional<Job> findJob(User user, UUID jobId) {
+        return Optional.ofNullable(jobs.get(jobId)).filter(job -> job.user.getUsername().equals(user.getUsername()));
+    }
+
+    private void deleteQuietly(Path path) {
+        if(path == null)
+            return;
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException ex) {
+            log.warn("Couldn't delete archive [{}]", path, ex);
+        }
+    }
+
+    private long countEntries(List<TreeNode> nodes) {
+        long count = 0;
+        for(TreeNode node : nodes) {
+            if(node instanceof FolderTreeNode) {
+                List<TreeNode> subnodes = ((FolderTreeNode) node).getSubnodes();
+                count += subnodes.isEmpty() ? 1 : countEntries(subnodes); // empty folders are entries as well
+            } else {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private long countBytes(List<TreeNode> nodes) {
+        long bytes = 0;
+        for(TreeNode node : nodes) {
+            if(node instanceof FolderTreeNode)
+                bytes += countBytes(((FolderTreeNode) node).getSubnodes());
+            else
+                bytes += ((FileTreeNode) node).getSize();
+        }
+        return bytes;
+    }
+
+    private ArchiveJobDto toDto(Job job) {
+        ArchiveJobDto dto = new ArchiveJobDto();
+        dto.setId(job.id);
+        dto.setStatus(job.status);
+        dto.setFailureReason(job.failureReason);
+        dto.setBytesDone(job.bytesDone.get());
+        dto.setBytesTotal(job.bytesTotal);
+        dto.setEntriesDone(job.entriesDone.get());
+        dto.setEntriesTotal(job.entriesTotal);
+        dto.setCreatedAt(job.createdAt);
+        dto.setExpiresAt(job.expiresAt);
+        return dto;
+    }
+
+    private static class Job {
+
+        private final UUID id;
+        private final User user;
+        private final LocalDateTime createdAt = LocalDateTime.now();
+        private final AtomicLong bytesDone = new AtomicLong();
+        private final AtomicLong entriesDone = new AtomicLong();
+
+        private volatile List<TreeNode> nodes;
+        private volatile ArchiveJobDto.Status status = ArchiveJobDto.Status.QUEUED;
+        private volatile String failureReason;
+        private volatile Path target;
+        private volatile LocalDateTime expiresAt;
+        private volatile Future<?> future;
+        private long bytesTotal;
+        private long entriesTotal;
+
+        Job(UUID id, User user, List<TreeNode> nodes) {
+            this.id = id;
+            this.user = user;
+            this.nodes = nodes;
+        }
+    }
+
+}
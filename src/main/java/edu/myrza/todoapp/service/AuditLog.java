@@ -0,0 +1,215 @@
+package edu.myrza.todoapp.service;
+
+/*
+*  Audit trail of file operations (who uploaded, moved, downloaded or deleted what).
+*
+*  Recording an event never touches the db: events go into a lock-free ring buffer (see RingBuffer) and a single
+*  background writer inserts them in batches. Events recorded inside a transaction are enqueued only after it
+*  commits, so rolled back operations don't show up. When the buffer is full the event is dropped
+*  (audit.overflow-policy=DROP, the default) or the caller waits for a free slot up to 'audit.block-max-millis' and
+*  drops it only then (BLOCK). Dropped events are counted, a failed batch is logged and dropped as well.
+*
+*  Events still in the buffer when the JVM dies are lost, the log is meant for auditing, not for recovery.
+* */
+
+import edu.myrza.todoapp.model.dto.audit.AuditEventDto;
+import edu.myrza.todoapp.model.dto.audit.AuditEventsResponse;
+import edu.myrza.todoapp.model.entity.AuditEvent;
+import edu.myrza.todoapp.model.entity.ChangeRecord;
+import edu.myrza.todoapp.model.entity.User;
+import edu.myrza.todoapp.model.enums.AuditAction;
+import edu.myrza.todoapp.repos.AuditEventRepository;
+import edu.myrza.todoapp.util.RingBuffer;
+import edu.myrza.todoapp.util.UuidGenerator;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Collectors;
+
+@Service
+public class AuditLog {
+
+    private static final Logger log = LoggerFactory.getLogger(AuditLog.class);
+
+    public enum OverflowPolicy { DROP, BLOCK }
+
+    private final AuditEventRepository auditEventRepository;
+    private final boolean enabled;
+    private final RingBuffer<AuditEvent> buffer;
+    private final int batchSize;
+    private final long flushIntervalNanos;
+    private final OverflowPolicy overflowPolicy;
+    private final long blockMaxNanos;
+    private final int pageSize;
+
+    private final LongAdder recorded = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+
+    private Thread writer;
+    private volatile boolean running;
+
+    @Autowired
+    public AuditLog(
+            AuditEventRepository auditEventRepository,
+            MeterRegistry meterRegistry,
+            @Value("${audit.enabled:true}") boolean enabled,
+            @Value("${audit.buffer-capacity:65536}") int bufferCapacity,
+            @Value("${audit.batch-size:500}") int batchSize,
+            @Value("${audit.flush-interval-millis:200}") long flushIntervalMillis,
+            @Value("${audit.overflow-policy:DROP}") OverflowPolicy overflowPolicy,
+            @Value("${audit.block-max-millis:50}") long blockMaxMillis,
+            @Value("${audit.page-size:100}") int pageSize)
+    {
+        this.auditEventRepository = auditEventRepository;
+        this.enabled = enabled;
+        this.buffer = new RingBuffer<>(bufferCapacity);
+        this.batchSize = batchSize;
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+        this.overflowPolicy = overflowPolicy;
+        this.blockMaxNanos = TimeUnit.MILLISECONDS.toNanos(blockMaxMillis);
+        this.pageSize = pageSize;
+
+        FunctionCounter.builder("audit.events.recorded", recorded, LongAdder::sum).register(meterRegistry);
+        FunctionCounter.builder("audit.events.dropped", dropped, LongAdder::sum).register(meterRegistry);
+        FunctionCounter.builder("audit.events.failed", failed, LongAdder::sum).register(meterRegistry);
+        Gauge.builder("audit.events.backlog", buffer, RingBuffer::size).register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        if(!enabled)
+            return;
+
+        running = true;
+        writer = new Thread(this::writeLoop, "audit-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if(writer == null)
+            return;
+
+        running = false;
+        LockSupport.unpark(writer);
+        writer.join(TimeUnit.SECONDS.toMillis(10));
+    }
+
+    public void record(User user, AuditAction action, UUID fileId, String name) {
+        if(!enabled)
+            return;
+
+        AuditEvent event = AuditEvent.of(user, action, fileId, name);
+        event.setId(UuidGenerator.next());
+        enqueueAfterCommit(Collections.singletonList(event));
+    }
+
+    // One event per journal entry of the operation
+    public void record(User user, AuditAction action, List<ChangeRecord> changes) {
+        if(!enabled || changes.isEmpty())
+            return;
+
+        List<AuditEvent> events = new ArrayList<>(changes.size());
+        for(ChangeRecord change : changes) {
+            AuditEvent event = AuditEvent.of(user, action, change.getFileId(), change.getName());
+            event.setId(UuidGenerator.next());
+            events.add(event);
+        }
+        enqueueAfterCommit(events);
+    }
+
+    // userId null means events of all users
+    @Transactional(readOnly = true)
+    public AuditEventsResponse serveEvents(Long userId, UUID fileId, AuditAction action, UUID before) {
+
+        List<AuditEvent> events = auditEventRepository.serveEvents(userId, fileId, action, before, pageSize);
+        UUID cursor = events.size() < pageSize ? null : events.get(events.size() - 1).getId();
+
+        return new AuditEventsResponse(cursor, events.stream().map(this::toDto).collect(Collectors.toList()));
+    }
+
+    private void enqueueAfterCommit(List<AuditEvent> events) {
+        if(!TransactionSynchronizationManager.isSynchronizationActive()) {
+            enqueue(events);
+            return;
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                enqueue(events);
+            }
+        });
+    }
+
+    private void enqueue(List<AuditEvent> events) {
+        for(AuditEvent event : events) {
+            if(buffer.offer(event) || (overflowPolicy == OverflowPolicy.BLOCK && offerWaiting(event)))
+                recorded.increment();
+            else
+                dropped.increment();
+        }
+    }
+
+    private boolean offerWaiting(AuditEvent event) {
+        long deadline = System.nanoTime() + blockMaxNanos;
+        LockSupport.unpark(writer);
+        while(System.nanoTime() < deadline) {
+            LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(100));
+            if(buffer.offer(event))
+                return true;
+        }
+        return false;
+    }
+
+    private void writeLoop() {
+        List<AuditEvent> batch = new ArrayList<>(batchSize);
+        while(running || buffer.size() > 0) {
+            buffer.drainTo(batch, batchSize);
+            if(batch.isEmpty()) {
+                LockSupport.parkNanos(this, flushIntervalNanos);
+                continue;
+            }
+
+            try {
+                auditEventRepository.saveAll(batch);
+            } catch (RuntimeException ex) {
+                failed.add(batch.size());
+                log.warn("Couldn't write {} audit events", batch.size(), ex);
+            }
+            batch.clear();
+        }
+    }
+
+    private AuditEventDto toDto(AuditEvent event) {
+        AuditEventDto dto = new AuditEventDto();
+        dto.setId(event.getId());
+        dto.setUsername(event.getUsername());
+        dto.setAction(event.getAction());
+        dto.setFileId(event.getFileId());
+        dto.setName(event.getName());
+        dto.setTime(event.getCreatedAt());
+        return dto;
+    }
+
+}
@@ -0,0 +1,158 @@
+package edu.myrza.todoapp.service;
+
+/*
+*  Per-user change journal used by sync clients.
+*
+*  FileService records changes in the same transaction as the mutation itself, so the journal never
+*  disagrees with the tree. Clients either poll '/changes?since=cursor' or long-poll it, long-polls are parked
+*  until the user's next commit (or timeout). Parked requests live in this JVM only.
+* */
+
+import edu.myrza.todoapp.event.ChangesRecordedEvent;
+import edu.myrza.todoapp.model.dto.changes.ChangeDto;
+import edu.myrza.todoapp.model.dto.changes.ChangesResponse;
+import edu.myrza.todoapp.model.entity.ChangeRecord;
+import edu.myrza.todoapp.model.entity.User;
+import edu.myrza.todoapp.repos.ChangeRecordRepository;
+import edu.myrza.todoapp.util.UuidGenerator;
+import lombok.AllArgsConstructor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Collectors;
+
+@Service
+public class ChangeJournalService {
+
+    private final ChangeRecordRepository changeRecordRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final int pageSize;
+    private final long maxWaitSeconds;
+
+    // user id -> parked long-poll requests
+    private final ConcurrentMap<Long, Set<Waiter>> waiters = new ConcurrentHashMap<>();
+
+    @Autowired
+    public ChangeJournalService(
+            ChangeRecordRepository changeRecordRepository,
+            ApplicationEventPublisher eventPublisher,
+            @Value("${changes.page-size:1000}") int pageSize,
+            @Value("${changes.long-poll.max-wait-seconds:60}") long maxWaitSeconds)
+    {
+        this.changeRecordRepository = changeRecordRepository;
+        this.eventPublisher = eventPublisher;
+        this.pageSize = pageSize;
+        this.maxWaitSeconds = maxWaitSeconds;
+    }
+
+    // Must be called inside the transaction that performs the mutation: the rows are written in that
+    // transaction, never in one of their own, so they commit or roll back together with the change
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void record(User user, List<ChangeRecord> changes) {
+
+        if(changes.isEmpty())
+            return;
+
+        changeRecordRepository.reserveSeq(user.getId(), changes.size());
+        long seq = changeRecordRepository.serveLastSeq(user.getId()) - changes.size();
+
+        LocalDateTime now = LocalDateTime.now();
+        for(ChangeRecord change : changes) {
+            change.setId(UuidGenerator.next());
+            change.setOwner(user);
+            change.setSeq(++seq);
+            change.setCreatedAt(now);
+        }
+
+        changeRecordRepository.saveAll(changes);
+
+        eventPublisher.publishEvent(new ChangesRecordedEvent(user));
+    }
+
+    @Transactional(readOnly = true)
+    public ChangesResponse serveChanges(User user, long since) {
+
+        List<ChangeRecord> records = changeRecordRepository.findByOwnerAndSeqGreaterThanOrderBySeq(user, since, PageRequest.of(0, pageSize + 1));
+
+        boolean hasMore = records.size() > pageSize;
+        if(hasMore)
+            records = records.subList(0, pageSize);
+
+        long cursor = records.isEmpty() ? since : records.get(records.size() - 1).getSeq();
+        List<ChangeDto> changes = records.stream().map(this::toDto).collect(Collectors.toList());
+
+        return new ChangesResponse(cursor, hasMore, changes);
+    }
+
+    // Completes right away if there are changes after 'since', otherwise waits for the next commit or 'waitSeconds'
+    public DeferredResult<ChangesResponse> awaitChanges(User user, long since, long waitSeconds) {
+
+        long timeoutSeconds = Math.min(Math.max(waitSeconds, 0), maxWaitSeconds);
+        DeferredResult<ChangesResponse> result = new DeferredResult<>(
+                timeoutSeconds * 1000,
+                () -> new ChangesResponse(since, false, Collections.emptyList()));
+
+        if(timeoutSeconds == 0) {
+            result.setResult(serveChanges(user, since));
+            return result;
+        }
+
+        // Park first and check afterwards, so a commit that happens in between isn't missed
+        Waiter waiter = new Waiter(user, since, result);
+        Set<Waiter> userWaiters = waiters.computeIfAbsent(user.getId(), id -> ConcurrentHashMap.newKeySet());
+        userWaiters.add(waiter);
+        result.onCompletion(() -> userWaiters.remove(waiter));
+
+        ChangesResponse changes = serveChanges(user, since);
+        if(!changes.getChanges().isEmpty())
+            result.setResult(changes);
+
+        return result;
+    }
+
+    @TransactionalEventListener
+    public void onChangesRecorded(ChangesRecordedEvent event) {
+        Set<Waiter> userWaiters = waiters.get(event.getUser().getId());
+        if(userWaiters == null)
+            return;
+
+        for(Waiter waiter : userWaiters) {
+            if(userWaiters.remove(waiter))
+                waiter.result.setResult(serveChanges(waiter.user, waiter.since));
+        }
+    }
+
+    private ChangeDto toDto(ChangeRecord record) {
+        ChangeDto dto = new ChangeDto();
+        dto.setSeq(record.getSeq());
+        dto.setType(record.getChangeType());
+        dto.setFileId(record.getFileId());
+        dto.setFileType(record.getFileType());
+        dto.setParentId(record.getParentId());
+        dto.setName(record.getName());
+        dto.setSize(record.getSize());
+        dto.setTime(record.getCreatedAt());
+        return dto;
+    }
+
+    @AllArgsConstructor
+    private static class Waiter {
+        private final User user;
+        private final long since;
+        private final DeferredResult<ChangesResponse> result;
+    }
+
+}
@@ -0,0 +1,244 @@
+package edu.myrza.todoapp.service;
+
+/*
+*  rsync-style delta upload of modified files.
+*
+*  1. The client asks for the signature of the stored file: for every block of 'blockSize' bytes a weak rolling
+*     checksum (RollingChecksum) and a strong md5. Block sizes that would split the file into more than
+*     MAX_BLOCK_COUNT blocks are rejected, the signature is built in memory.
+*  2. The client slides a window over its modified copy. Wherever the rolling checksum and then the md5 match a
+*     block, it sends a COPY instruction, everything else is sent as literal DATA.
+*  3. The server rebuilds the new content from the stored blob and the instructions into a new blob, checks
+*     it against the declared size and sha-256, and points the same file record to it (version + 1).
+*
+*  Delta format (request body, big-endian): a sequence of
+*      0x01 | int firstBlock | int blockCount     copy blocks [firstBlock, firstBlock + blockCount) of the stored file
+*      0x02 | int length | length bytes           literal data
+*
+*  Blobs may be shared by copies, so the stored blob is never modified, the new content always goes to a new blob.
+*  The new blob is built outside of any db transaction, only the final swap is transactional.
+* */
+
+import edu.myrza.todoapp.exceptions.BussinesException;
+import edu.myrza.todoapp.exceptions.SystemException;
+import edu.myrza.todoapp.model.dto.delta.BlockSignature;
+import edu.myrza.todoapp.model.dto.delta.FileSignatureDto;
+import edu.myrza.todoapp.model.dto.files.FileRecordDto;
+import edu.myrza.todoapp.model.entity.FileRecord;
+import edu.myrza.todoapp.model.entity.Status;
+import edu.myrza.todoapp.model.entity.User;
+import edu.myrza.todoapp.model.enums.FileType;
+import edu.myrza.todoapp.model.enums.StorageEncoding;
+import edu.myrza.todoapp.repos.FileRepository;
+import edu.myrza.todoapp.util.BlobLocation;
+import edu.myrza.todoapp.util.FileSystemUtil;
+import edu.myrza.todoapp.util.RollingChecksum;
+import edu.myrza.todoapp.util.UuidGenerator;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.UUID;
+
+@Service
+public class DeltaSyncService {
+
+    private static final int MIN_BLOCK_SIZE = 1024;
+    private static final int MAX_BLOCK_SIZE = 8 * 1024 * 1024;
+    // a signature is held in memory and sent as one response, about 100 bytes per block
+    static final int MAX_BLOCK_COUNT = 64 * 1024;
+
+    private static final int OP_COPY = 0x01;
+    private static final int OP_DATA = 0x02;
+
+    private final FileRepository fileRepository;
+    private final FileService fileService;
+    private final FileSystemUtil fileSystemUtil;
+    private final QuotaService quotaService;
+
+    @Autowired
+    public DeltaSyncService(FileRepository fileRepository, FileService fileService, FileSystemUtil fileSystemUtil, QuotaService quotaService) {
+        this.fileRepository = fileRepository;
+        this.fileService = fileService;
+        this.fileSystemUtil = fileSystemUtil;
+        this.quotaService = quotaService;
+    }
+
+    public FileSignatureDto serveSignature(User user, UUID fileId, Integer requestedBlockSize) throws IOException {
+
+        FileRecord file = serveLiveFile(user, fileId);
+        int blockSize = requestedBlockSize == null ? defaultBlockSize(file.getSize()) : checkBlockSize(requestedBlockSize, file.getSize());
+
+        FileSignatureDto signature = new FileSignatureDto();
+        signature.setFileId(fileId);
+        signature.setVersion(file.getVersion());
+        signature.setSize(file.getSize());
+        signature.setBlockSize(blockSize);
+
+        // blobs never change, so the blob read here is exactly the content of 'version'
+        MessageDigest md5 = digest("MD5");
+        byte[] block = new byte[blockSize];
+        try(InputStream in = fileSystemUtil.openFile(fileService.locateBlob(user, file), file.getStorageEncoding())) {
+            int length;
+            while((length = readBlock(in, block)) > 0) {
+                md5.update(block, 0, length);
+                signature.getBlocks().add(new BlockSignature(RollingChecksum.of(block, 0, length).value(), toHex(md5.digest())));
+            }
+        }
+
+        return signature;
+    }
+
+    // 'size' and 'sha256' describe the new content, 'size' is reserved from the quota upfront
+    public FileRecordDto applyDelta(User user, UUID fileId, long baseVersion, int blockSize, long size, String sha256, InputStream delta) throws IOException {
+
+        FileRecord file = serveLiveFile(user, fileId);
+        if(file.getVersion() != baseVersion)
+            throw new BussinesException(BussinesException.Code.DELTA_001);
+        checkBlockSize(blockSize, file.getSize());
+
+        String username = user.getUsername();
+        StorageEncoding storageEncoding = file.getStorageEncoding();
+        BlobLocation blob = new BlobLocation(username, fileSystemUtil.placeBlob(), UuidGenerator.next());
+
+        quotaService.reserve(user, size);
+        // everything after the reservation happens inside the try, so a failure always gives the bytes back
+        Path base = null;
+        try {
+            base = fileSystemUtil.decodedBlobPath(fileService.locateBlob(user, file), storageEncoding);
+            MessageDigest digest = digest("SHA-256");
+            long written;
+            try(FileChannel baseChannel = FileChannel.open(base, StandardOpenOption.READ);
+                OutputStream out = new DigestOutputStream(fileSystemUtil.createBlob(blob, storageEncoding), digest)) {
+                written = apply(new DataInputStream(new BufferedInputStream(delta, 64 * 1024)), baseChannel, blockSize, out, size);
+            }
+
+            if(written != size || !toHex(digest.digest()).equalsIgnoreCase(sha256))
+                throw new BussinesException(BussinesException.Code.DELTA_002);
+
+            return fileService.replaceContent(user, fileId, baseVersion, blob, size);
+        } catch (IOException | RuntimeException ex) {
+            fileSystemUtil.deleteBlobs(Collections.singleton(blob));
+            quotaService.release(user, size);
+            throw ex;
+        } finally {
+            if(base != null && storageEncoding != StorageEncoding.IDENTITY)
+                Files.deleteIfExists(base);
+        }
+    }
+
+    // Returns the number of bytes written, never more than 'maxSize'
+    static long apply(DataInputStream ops, FileChannel base, int blockSize, OutputStream out, long maxSize) throws IOException {
+
+        ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+        long written = 0;
+
+        try {
+            int op;
+            while((op = ops.read()) >= 0) {
+                if(op == OP_COPY) {
+                    int firstBlock = ops.readInt();
+                    int blockCount = ops.readInt();
+                    long from = (long) firstBlock * blockSize;
+                    long to = Math.min(base.size(), from + (long) blockCount * blockSize);
+                    if(firstBlock < 0 || blockCount <= 0 || from >= base.size() || written + (to - from) > maxSize)
+                        throw new BussinesException(BussinesException.Code.DELTA_002);
+
+                    for(long position = from; position < to; ) {
+                        buffer.clear();
+                        buffer.limit((int) Math.min(buffer.capacity(), to - position));
+                        int bytesRead = base.read(buffer, position);
+                        if(bytesRead < 0)
+                            throw new EOFException();
+                        out.write(buffer.array(), 0, bytesRead);
+                        position += bytesRead;
+                    }
+                    written += to - from;
+                } else if(op == OP_DATA) {
+                    int length = ops.readInt();
+                    if(length < 0 || written + length > maxSize)
+                        throw new BussinesException(BussinesException.Code.DELTA_002);
+
+                    for(int remaining = length; remaining > 0; ) {
+                        int bytesRead = ops.read(buffer.array(), 0, Math.min(buffer.capacity(), remaining));
+                        if(bytesRead < 0)
+                            throw new EOFException();
+                        out.write(buffer.array(), 0, bytesRead);
+                        remaining -= bytesRead;
+                    }
+                    written += length;
+                } else {
+                    throw new BussinesException(BussinesException.Code.DELTA_002);
+                }
+            }
+        } catch (EOFException ex) {
+            // truncated instruction
+            throw new BussinesException(BussinesException.Code.DELTA_002);
+        }
+
+        return written;
+    }
+
+    private FileRecord serveLiveFile(User user, UUID fileId) {
+        return fileRepository.findByIdAndOwner(fileId, user)
+                             .filter(file -> file.getFileType().equals(FileType.FILE))
+                             .filter(file -> !file.getStatus().getCode().equals(Status.Code.DELETED))
+                             .orElseThrow(() -> new RuntimeException("File [" + fileId + "] not found"));
+    }
+
+    // about sqrt(size) like rsync, i.e. the signature and the number of blocks grow together,
+    // but never more than MAX_BLOCK_COUNT blocks
+    static int defaultBlockSize(long size) {
+        long blockSize = ((long) Math.sqrt(size) / MIN_BLOCK_SIZE) * MIN_BLOCK_SIZE;
+        blockSize = Math.max(Math.min(Math.max(blockSize, MIN_BLOCK_SIZE), 1024 * 1024), minBlockSize(size));
+        // files over MAX_BLOCK_SIZE * MAX_BLOCK_COUNT bytes can't be synced by deltas
+        if(blockSize > MAX_BLOCK_SIZE)
+            throw new BussinesException(BussinesException.Code.DELTA_002);
+        return (int) blockSize;
+    }
+
+    static int checkBlockSize(int blockSize, long size) {
+        if(blockSize < MIN_BLOCK_SIZE || blockSize > MAX_BLOCK_SIZE || blockSize < minBlockSize(size))
+            throw new BussinesException(BussinesException.Code.DELTA_002);
+        return blockSize;
+    }
+
+    // Smallest multiple of MIN_BLOCK_SIZE that splits 'size' bytes into at most MAX_BLOCK_COUNT blocks
+    private static long minBlockSize(long size) {
+        long blocks = (size + MAX_BLOCK_COUNT - 1) / MAX_BLOCK_COUNT;
+        return (blocks + MIN_BLOCK_SIZE - 1) / MIN_BLOCK_SIZE * MIN_BLOCK_SIZE;
+    }
+
+    private int readBlock(InputStream in, byte[] block) throws IOException {
+        int length = 0;
+        int bytesRead;
+        while(length < block.length && (bytesRead = in.read(block, length, block.length - length)) >= 0)
+            length += bytesRead;
+        return length;
+    }
+
+    private static MessageDigest digest(String algorithm) {
+        try {
+            return MessageDigest.getInstance(algorithm);
+        } catch (NoSuchAlgorithmException ex) {
+            throw new SystemException(ex, algorithm + " is not supported");
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for(byte b : bytes)
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        return hex.toString();
+    }
+
+}
@@ -1,46 +1,106 @@
 package edu.myrza.todoapp.service;
 
+import edu.myrza.todoapp.event.FileContentsChangedEvent;
+import edu.myrza.todoapp.event.FilesUploadedEvent;
+import edu.myrza.todoapp.event.FoldersChangedEvent;
+import edu.myrza.todoapp.exceptions.BussinesException;
 import edu.myrza.todoapp.exceptions.SystemException;
 import edu.myrza.todoapp.model.dto.files.FileRecordDto;
+import edu.myrza.todoapp.model.dto.files.FolderContentDto;
 import edu.myrza.todoapp.model.entity.*;
+import edu.myrza.todoapp.model.enums.AuditAction;
+import edu.myrza.todoapp.model.enums.ChangeType;
 import edu.myrza.todoapp.model.enums.EdgeType;
 import edu.myrza.todoapp.model.enums.FileType;
+import edu.myrza.todoapp.model.enums.StorageEncoding;
+import edu.myrza.todoapp.repos.BlobRepository;
 import edu.myrza.todoapp.repos.EdgeRepository;
 import edu.myrza.todoapp.repos.FileRepository;
 import edu.myrza.todoapp.repos.StatusRepository;
 import edu.myrza.todoapp.util.*;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.core.io.FileSystemResource;
 import org.springframework.core.io.Resource;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Isolation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.time.LocalDateTime;
 import java.util.*;
+import java.util.function.BiFunction;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
 
 @Service
 public class FileService {
 
+    // Text-like formats that usually shrink several times when gzipped
+    private static final Set<String> COMPRESSIBLE_EXTENSIONS = new HashSet<>(Arrays.asList(
+            ".txt", ".log", ".csv", ".tsv", ".json", ".xml", ".html", ".htm", ".css", ".js", ".md", ".svg", ".sql", ".yml", ".yaml"));
+
+    // Compressing tiny files doesn't save anything, gzip header and trailer alone are 18 bytes
+    private static final long MIN_COMPRESSIBLE_SIZE = 1024;
+
     private final FileSystemUtil fileSystemUtil;
     private final StatusRepository statusRepository;
     private final FileRepository fileRepository;
     private final EdgeRepository edgeRepository;
+    private final BlobRepository blobRepository;
+    private final ChangeJournalService changeJournalService;
+    private final FolderContentCache folderContentCache;
+    private final HotFileCache hotFileCache;
+    private final AuditLog auditLog;
+    private final SubtreeLocks subtreeLocks;
+    private final QuotaService quotaService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final int extractMaxEntries;
+    private final long extractMaxBytes;
+    private final long extractMaxRatio;
 
     @Autowired
     public FileService(
             FileSystemUtil fileSystemUtil,
             StatusRepository statusRepository,
             FileRepository fileRepository,
-            EdgeRepository edgeRepository)
+            EdgeRepository edgeRepository,
+            BlobRepository blobRepository,
+            ChangeJournalService changeJournalService,
+            FolderContentCache folderContentCache,
+            HotFileCache hotFileCache,
+            AuditLog auditLog,
+            SubtreeLocks subtreeLocks,
+            QuotaService quotaService,
+            ApplicationEventPublisher eventPublisher,
+            @Value("${archive-extract.max-entries:100000}") int extractMaxEntries,
+            @Value("${archive-extract.max-bytes:10737418240}") long extractMaxBytes,
+            @Value("${archive-extract.max-ratio:100}") long extractMaxRatio)
     {
         this.fileSystemUtil = fileSystemUtil;
         this.statusRepository = statusRepository;
         this.fileRepository = fileRepository;
         this.edgeRepository = edgeRepository;
+        this.blobRepository = blobRepository;
+        this.changeJournalService = changeJournalService;
+        this.folderContentCache = folderContentCache;
+        this.hotFileCache = hotFileCache;
+        this.auditLog = auditLog;
+        this.subtreeLocks = subtreeLocks;
+        this.quotaService = quotaService;
+        this.eventPublisher = eventPublisher;
+        this.extractMaxEntries = extractMaxEntries;
+        this.extractMaxBytes = extractMaxBytes;
+        this.extractMaxRatio = extractMaxRatio;
     }
 
     // USER RELATED OPERATIONS
@@ -57,7 +117,9 @@ public class FileService {
             Status enabled = statusRepository.findByCode(Status.Code.ENABLED);
 
             // Save a record about the created root folder in db
-            FileRecord rootFolderRecord = FileRecord.createFolder(rootFolderName, rootFolderName, user, enabled);
+            FileRecord rootFolderRecord = FileRecord.createFolder(UuidGenerator.next(), rootFolderName, user, enabled);
+
+            quotaService.initialize(user);
 
             return toDto(fileRepository.save(rootFolderRecord));
         } catch (IOException ex) {
@@ -65,72 +127,128 @@ public class FileService {
         }
     }
 
+    @Transactional(readOnly = true)
+    public UUID serveUserRootFolderId(User user) {
+        return fileRepository.findRootFolderId(user)
+                             .orElseThrow(() -> new RuntimeException("No root folder for user [" + user.getUsername() + "] is found"));
+    }
+
     // FOLDER/FILE OPERATIONS
 
     @Transactional
-    public void deleteFiles(User user, List<String> ids) {
+    public void deleteFiles(User user, List<UUID> ids) {
+
+        subtreeLocks.lock(user, ids, Collections.emptyList());
 
         Status deleted = statusRepository.findByCode(Status.Code.DELETED);
 
-        for(String id : ids) {
+        // listings of the parents change, and so do listings of every deleted folder
+        Set<UUID> touchedFolders = edgeRepository.serveParentIds(user, ids);
+        List<ChangeRecord> changes = new ArrayList<>();
+        // blob id -> number of references dropped by this call
+        Map<UUID, Integer> droppedRefs = new HashMap<>();
+        List<UUID> deletedFiles = new ArrayList<>();
 
-            Optional<FileRecord> optFile = fileRepository.findById(id);
-            if(!optFile.isPresent())
+        for(UUID id : ids) {
+
+            Optional<FileRecord> optFile = fileRepository.findByIdAndOwner(id, user);
+            if(!optFile.isPresent() || optFile.get().getStatus().getCode().equals(Status.Code.DELETED))
                 continue;
 
             FileRecord file = optFile.get();
 
             // mark the file as 'deleted'
             file.setStatus(deleted);
+            changes.add(ChangeRecord.of(ChangeType.DELETED, file, null));
 
             // if the file is 'file' then just save it and continue
             if(!file.getFileType().equals(FileType.FOLDER)) {
+                droppedRefs.merge(file.getBlobId(), 1, Integer::sum);
+                deletedFiles.add(file.getId());
                 fileRepository.save(file);
                 continue;
             }
 
             // if the file is a folder then mark it's sub folders/files as 'deleted'
-            Set<FileRecord> descendants = edgeRepository.serveAllDescendants(file.getId());
+            Set<FileRecord> descendants = edgeRepository.serveAllDescendants(user, file.getId());
             for(FileRecord descendant : descendants) {
+                if(descendant.getStatus().getCode().equals(Status.Code.DELETED))
+                    continue;
                 descendant.setStatus(deleted);
+                if(descendant.getFileType().equals(FileType.FOLDER))
+                    touchedFolders.add(descendant.getId());
+                else {
+                    droppedRefs.merge(descendant.getBlobId(), 1, Integer::sum);
+                    deletedFiles.add(descendant.getId());
+                }
             }
 
             descendants.add(file);
+            touchedFolders.add(file.getId());
             fileRepository.saveAll(descendants);
 
         }
 
+        touchFolders(user, touchedFolders);
+        changeJournalService.record(user, changes);
+        auditLog.record(user, AuditAction.DELETE, changes);
+        if(!deletedFiles.isEmpty())
+            eventPublisher.publishEvent(new FileContentsChangedEvent(deletedFiles));
+
+        // Only blobs that lost their last reference free up space, copies of a deleted file keep the bytes alive
+        addBlobRefs(droppedRefs, -1);
+        if(!droppedRefs.isEmpty())
+            quotaService.onDeleted(user, blobRepository.sumUnreferencedSize(droppedRefs.keySet()));
+
     }
 
     @Transactional
-    public Optional<FileRecordDto> renameFile(User user, String fileId, String newName) {
-        Optional<FileRecord> optFileRecord = fileRepository.findById(fileId);
+    public Optional<FileRecordDto> renameFile(User user, UUID fileId, String newName) {
+        Optional<FileRecord> optFileRecord = fileRepository.findByIdAndOwner(fileId, user);
         if(optFileRecord.isPresent()) {
             FileRecord fileRecord = optFileRecord.get();
             fileRecord.setName(newName);
             fileRepository.save(fileRecord);
+            Set<UUID> parentIds = edgeRepository.serveParentIds(user, Collections.singleton(fileId));
+            touchFolders(user, parentIds);
+            List<ChangeRecord> changes = Collections.singletonList(
+                    ChangeRecord.of(ChangeType.RENAMED, fileRecord, parentIds.stream().findFirst().orElse(null)));
+            changeJournalService.record(user, changes);
+            auditLog.record(user, AuditAction.RENAME, changes);
             return Optional.of(toDto(fileRecord));
         }
 
         return Optional.empty();
     }
 
-    // Download multiple files
+    // Download multiple files, only the ones actually archived (user's own, not deleted) are audited
     @Transactional(readOnly = true)
-    public Resource downloadFiles(User user, List<String> ids) throws IOException {
+    public Resource downloadFiles(User user, List<UUID> ids) throws IOException {
+
+        List<FileRecord> files = fileRepository.findAllByIdInAndOwner(ids, user);
 
         // create a tree of files/folder you are gonna send back
-        List<TreeNode> nodes = buildTree(fileRepository.findAllById(ids));
+        List<TreeNode> nodes = buildTree(files);
 
         // use the tree to create appropriate .zip file
         File compressedFile = fileSystemUtil.compressAndReturnFiles(user.getUsername(), nodes);
 
+        files.stream()
+             .filter(file -> !file.getStatus().getCode().equals(Status.Code.DELETED))
+             .forEach(file -> auditLog.record(user, AuditAction.DOWNLOAD, file.getId(), file.getName()));
+
         // turn the .zip file into resource
         return new FileSystemResource(compressedFile);
     }
 
+    // Tree of files/folders to be archived later (outside of any transaction), see ArchiveJobService
+    @Transactional(readOnly = true)
+    public List<TreeNode> serveArchiveTree(User user, List<UUID> ids) {
+        return buildTree(fileRepository.findAllByIdInAndOwner(ids, user));
+    }
+
     @Transactional
-    public List<FileRecordDto> moveFiles(User user, String srcId, String destId, List<String> filesToMove) {
+    public List<FileRecordDto> moveFiles(User user, UUID srcId, UUID destId, List<UUID> filesToMove) {
 
         // Here, we make sure all the entries are unique and are not equal to either source folder or destination folder
         filesToMove = filesToMove.stream()
@@ -139,30 +257,40 @@ public class FileService {
                                     .collect(Collectors.toList());
 
         List<FileRecordDto> result = new ArrayList<>();
+        List<ChangeRecord> changes = new ArrayList<>();
+
+        subtreeLocks.lock(user, filesToMove, Collections.singleton(destId));
 
         // Here we access all of destination folder's ancestors
-        Optional<FileRecord> optDestFolder = fileRepository.findById(destId);
+        Optional<FileRecord> optDestFolder = fileRepository.findByIdAndOwner(destId, user);
         if(!optDestFolder.isPresent())
             return result;
 
         FileRecord destFolder = optDestFolder.get();
-        Set<FileRecord> newAncestors = Utils.append(edgeRepository.serveAncestors(destFolder.getId()), destFolder);
+        Set<UUID> touchedFolders = Utils.append(edgeRepository.serveParentIds(user, filesToMove), destId);
+        Set<FileRecord> newAncestors = Utils.append(edgeRepository.serveAncestors(user, destFolder.getId()), destFolder);
+
+        for(UUID fileId : filesToMove) {
 
-        for(String fileId : filesToMove) {
+            // a folder can't be moved into one of its descendants
+            if(newAncestors.stream().anyMatch(ancestor -> ancestor.getId().equals(fileId)))
+                continue;
 
-            Optional<FileRecord> optFile = fileRepository.findById(fileId);
+            Optional<FileRecord> optFile = fileRepository.findByIdAndOwner(fileId, user);
             if(!optFile.isPresent())
                 continue;
 
             FileRecord file = optFile.get();
 
+            file.setParentId(destId);
+
             if(file.getFileType().equals(FileType.FILE)) {
                 // 1.
-                edgeRepository.deleteByDescendant(file);
+                edgeRepository.deleteByDescendant(user, file);
                 // 2.
                 List<Edge> newEdges = newAncestors.stream().map(newAncestor -> {
                     Edge newEdge = new Edge();
-                    newEdge.setId(UUID.randomUUID().toString());
+                    newEdge.setId(UuidGenerator.next());
                     newEdge.setEdgeOwner(user);
                     newEdge.setAncestor(newAncestor);
                     newEdge.setDescendant(file);
@@ -177,6 +305,7 @@ public class FileService {
 
                 edgeRepository.saveAll(newEdges);
                 result.add(toDto(file));
+                changes.add(ChangeRecord.of(ChangeType.MOVED, file, destId));
                 continue;
             }
 
@@ -184,19 +313,19 @@ public class FileService {
             if(file.getFileType().equals(FileType.FOLDER)) {
 
                 // 1.1 Fetch current ancestors
-                Set<FileRecord> currentAncestors = edgeRepository.serveAncestors(file.getId());
+                Set<FileRecord> currentAncestors = edgeRepository.serveAncestors(user, file.getId());
 
                 // 1.2 Fetch all of the descendants + add the folder itself
-                Set<FileRecord> descendants = Utils.append(edgeRepository.serveAllDescendants(file.getId()), file);
+                Set<FileRecord> descendants = Utils.append(edgeRepository.serveAllDescendants(user, file.getId()), file);
 
                 // 1.3 Delete every edge between 'currentAncestors' and 'descendants'
-                edgeRepository.deleteByAncestorInAndDescendantIn(currentAncestors, descendants);
+                edgeRepository.deleteBetween(user, currentAncestors, descendants);
 
                 // 2.1
                 List<Edge> newEdges = newAncestors.stream()
                                                   .flatMap(newAncestor -> descendants.stream().map(descendant -> {
                                                       Edge newEdge = new Edge();
-                                                      newEdge.setId(UUID.randomUUID().toString());
+                                                      newEdge.setId(UuidGenerator.next());
                                                       newEdge.setEdgeOwner(user);
                                                       newEdge.setAncestor(newAncestor);
                                                       newEdge.setDescendant(descendant);
@@ -217,72 +346,243 @@ public class FileService {
             if(!allNewEdges.isEmpty()) {
                 edgeRepository.saveAll(allNewEdges);
                 result.add(toDto(file));
+                changes.add(ChangeRecord.of(ChangeType.MOVED, file, destId));
             }
         }
 
+        touchFolders(user, touchedFolders);
+        changeJournalService.record(user, changes);
+        auditLog.record(user, AuditAction.MOVE, changes);
+
         return result;
     }
 
+    // Copies are metadata only: copied files share blobs with the originals, so no bytes are read or written
+    // and the copy doesn't count against the quota until the originals are deleted
+    @Transactional
+    public List<FileRecordDto> copyFiles(User user, UUID destId, List<UUID> filesToCopy) {
+
+        subtreeLocks.lock(user, Collections.emptyList(), Utils.append(new HashSet<>(filesToCopy), destId));
+
+        FileRecord destFolder = fileRepository.findByIdAndOwner(destId, user)
+                                              .filter(folder -> folder.getFileType().equals(FileType.FOLDER))
+                                              .filter(folder -> !folder.getStatus().getCode().equals(Status.Code.DELETED))
+                                              .orElseThrow(() -> new RuntimeException("No folder with id [" + destId + "] is found"));
+
+        Status enabled = statusRepository.findByCode(Status.Code.ENABLED);
+        Set<FileRecord> newAncestors = Utils.append(edgeRepository.serveAncestors(user, destId), destFolder);
+        Set<UUID> newAncestorIds = newAncestors.stream().map(FileRecord::getId).collect(Collectors.toSet());
+
+        List<FileRecord> copies = new ArrayList<>();
+        List<FileRecord> rootCopies = new ArrayList<>();
+        List<Edge> edges = new ArrayList<>();
+        // blob id -> number of new references
+        Map<UUID, Integer> addedRefs = new HashMap<>();
+
+        for(UUID fileId : new LinkedHashSet<>(filesToCopy)) {
+
+            Optional<FileRecord> optFile = fileRepository.findByIdAndOwner(fileId, user);
+            if(!optFile.isPresent() || optFile.get().getStatus().getCode().equals(Status.Code.DELETED))
+                continue;
+
+            // a folder can't be copied into itself or into one of its descendants
+            FileRecord file = optFile.get();
+            if(newAncestorIds.contains(file.getId()))
+                continue;
+
+            // original id -> copy, for the root and every live descendant
+            Map<UUID, FileRecord> copiesById = new HashMap<>();
+            FileRecord rootCopy = FileRecord.copyOf(UuidGenerator.next(), file, enabled);
+            rootCopy.setParentId(destId);
+            copiesById.put(file.getId(), rootCopy);
+
+            if(file.getFileType().equals(FileType.FOLDER)) {
+                for(FileRecord descendant : edgeRepository.serveAllDescendants(user, file.getId())) {
+                    if(!descendant.getStatus().getCode().equals(Status.Code.DELETED))
+                        copiesById.put(descendant.getId(), FileRecord.copyOf(UuidGenerator.next(), descendant, enabled));
+                }
+
+                // the closure table inside the subtree is copied as is
+                for(Object[] row : edgeRepository.serveSubtreeEdges(user, file.getId())) {
+                    FileRecord ancestor = copiesById.get((UUID) row[0]);
+                    FileRecord descendant = copiesById.get((UUID) row[1]);
+                    if(ancestor == null || descendant == null)
+                        continue;
+
+                    EdgeType edgeType = (EdgeType) row[2];
+                    edges.add(new Edge(UuidGenerator.next(), ancestor, descendant, edgeType, user));
+                    if(edgeType == EdgeType.DIRECT)
+                        descendant.setParentId(ancestor.getId());
+                }
+            }
+
+            // every copy hangs under the destination folder and all of its ancestors
+            for(FileRecord copy : copiesById.values()) {
+                for(FileRecord newAncestor : newAncestors) {
+                    EdgeType edgeType = newAncestor.equals(destFolder) && copy == rootCopy ? EdgeType.DIRECT : EdgeType.INDIRECT;
+                    edges.add(new Edge(UuidGenerator.next(), newAncestor, copy, edgeType, user));
+                }
+            }
+
+            for(FileRecord copy : copiesById.values()) {
+                if(copy.getBlobId() != null)
+                    addedRefs.merge(copy.getBlobId(), 1, Integer::sum);
+            }
+
+            copies.addAll(copiesById.values());
+            rootCopies.add(rootCopy);
+        }
+
+        // the copied locations may be stale if a blob was relocated after its file was read
+        relocateCopies(copies, addedRefs.keySet());
+
+        fileRepository.saveAll(copies);
+        edgeRepository.saveAll(edges);
+        addBlobRefs(addedRefs, 1);
+
+        touchFolders(user, Collections.singleton(destId));
+        List<ChangeRecord> changes = rootCopies.stream()
+                                               .map(copy -> ChangeRecord.of(ChangeType.CREATED, copy, destId))
+                                               .collect(Collectors.toList());
+        changeJournalService.record(user, changes);
+        auditLog.record(user, AuditAction.COPY, changes);
+
+        return rootCopies.stream().map(this::toDto).collect(Collectors.toList());
+    }
+
     // FOLDER OPERATIONS
 
     @Transactional
-    public FileRecordDto createFolder(User user, String parentId, String folderName) {
+    public FileRecordDto createFolder(User user, UUID parentId, String folderName) {
+
+        subtreeLocks.lock(user, Collections.emptyList(), Collections.singleton(parentId));
+
+        // the parent may have been deleted while we waited for the lock
+        FileRecord parent = fileRepository.findByIdAndOwner(parentId, user)
+                                          .filter(folder -> folder.getFileType().equals(FileType.FOLDER))
+                                          .filter(folder -> !folder.getStatus().getCode().equals(Status.Code.DELETED))
+                                          .orElseThrow(() -> new RuntimeException("No folder with id [" + parentId + "] is found"));
 
         Status enabled = statusRepository.findByCode(Status.Code.ENABLED);
 
         // First we create folderRecord
-        FileRecord folderRecord = FileRecord.createFolder(UUID.randomUUID().toString(), folderName, user, enabled);
+        FileRecord folderRecord = FileRecord.createFolder(UuidGenerator.next(), folderName, user, enabled);
+        folderRecord.setParentId(parentId);
 
         FileRecord savedFolderRecord = fileRepository.save(folderRecord);
 
         // Then we create edges
         // access all of the ancestors of 'parent' folderRecord
-        Set<Edge> ancestorsEdges = edgeRepository.serveAncestors(parentId).stream()
-                .map(ancestor -> new Edge(UUID.randomUUID().toString(), ancestor, savedFolderRecord, EdgeType.INDIRECT, user))
+        Set<Edge> ancestorsEdges = edgeRepository.serveAncestors(user, parentId).stream()
+                .map(ancestor -> new Edge(UuidGenerator.next(), ancestor, savedFolderRecord, EdgeType.INDIRECT, user))
                 .collect(Collectors.toSet());
 
-        // access 'parent' folder
-        Edge parentEdge = fileRepository.findById(parentId)
-                .map(parent -> new Edge(UUID.randomUUID().toString(), parent, savedFolderRecord, EdgeType.DIRECT, user))
-                .orElseThrow(() -> new RuntimeException("No folderRecord with id [" + parentId + "] is found"));
-
-        ancestorsEdges.add(parentEdge);
+        ancestorsEdges.add(new Edge(UuidGenerator.next(), parent, savedFolderRecord, EdgeType.DIRECT, user));
 
         //save new edges
         edgeRepository.saveAll(ancestorsEdges);
 
+        touchFolders(user, Collections.singleton(parentId));
+        List<ChangeRecord> changes = Collections.singletonList(ChangeRecord.of(ChangeType.CREATED, savedFolderRecord, parentId));
+        changeJournalService.record(user, changes);
+        auditLog.record(user, AuditAction.CREATE_FOLDER, changes);
+
         return toDto(savedFolderRecord);
     }
 
+    // Path of the root folder is "/", paths of everything else are relative to it, e.g. "/projects/2026/report.pdf"
+    @Transactional(readOnly = true)
+    public Optional<UUID> resolvePath(User user, String path) {
+        List<String> segments = Stream.of(path.split("/"))
+                                      .filter(segment -> !segment.isEmpty())
+                                      .collect(Collectors.toList());
+
+        return fileRepository.resolvePath(user.getId(), String.join("/", segments), segments.size())
+                             .map(UUID::fromString);
+    }
+
+    // Ancestors of the file ordered from the root folder down to the file itself.
+    // The closure table gives all of the ancestors in one query, 'parentId' links put them in order.
     @Transactional(readOnly = true)
-    public List<FileRecordDto> serveFolderContent(User user, String folderId) {
-        return edgeRepository.serveDescendants(folderId, EdgeType.DIRECT).stream()
-                             .map(this::toDto)
-                             .collect(Collectors.toList());
+    public List<FileRecordDto> serveBreadcrumbs(User user, UUID fileId) {
+
+        Optional<FileRecord> optFile = fileRepository.findByIdAndOwner(fileId, user);
+        if(!optFile.isPresent() || optFile.get().getStatus().getCode().equals(Status.Code.DELETED))
+            return Collections.emptyList();
+
+        Map<UUID, FileRecord> ancestors = edgeRepository.serveAncestors(user, fileId).stream()
+                                                        .collect(Collectors.toMap(FileRecord::getId, ancestor -> ancestor));
+
+        LinkedList<FileRecordDto> breadcrumbs = new LinkedList<>();
+        for(FileRecord file = optFile.get(); file != null; file = ancestors.remove(file.getParentId()))
+            breadcrumbs.addFirst(toDto(file));
+
+        return breadcrumbs;
+    }
+
+    // The folder's version and its listing come from one snapshot (of one database, replicas included), so the listing
+    // is cached and tagged with exactly the version it belongs to. 'notModified' is asked with the folder first, the
+    // listing isn't touched for a conditional request it answers.
+    @Transactional(readOnly = true, isolation = Isolation.REPEATABLE_READ)
+    public Optional<FolderContentDto> serveFolderContent(User user, UUID folderId, Predicate<FileRecordDto> notModified) {
+        Optional<FileRecord> optFolder = fileRepository.findByIdAndOwner(folderId, user)
+                                                       .filter(file -> !file.getStatus().getCode().equals(Status.Code.DELETED));
+        if(!optFolder.isPresent())
+            return Optional.empty();
+
+        FolderContentDto folderContent = new FolderContentDto();
+        folderContent.setFolder(toDto(optFolder.get()));
+        if(notModified.test(folderContent.getFolder()))
+            return Optional.of(folderContent);
+
+        folderContent.setContent(folderContentCache.get(folderId, optFolder.get().getVersion(), () ->
+                edgeRepository.serveDescendants(user, folderId, EdgeType.DIRECT).stream()
+                              .map(this::toListingDto)
+                              .collect(Collectors.toList())));
+        return Optional.of(folderContent);
     }
 
     // FILE OPERATIONS
 
     @Transactional
-    public List<FileRecordDto> uploadFiles(User user, String folderId, MultipartFile[] files) {
+    public List<FileRecordDto> uploadFiles(User user, UUID folderId, MultipartFile[] files) {
 
         // Save files in disk
         List<MultipartFileDecorator> fileDecorators = Stream.of(files)
-                .map(mf -> new MultipartFileDecorator(mf, UUID.randomUUID().toString()))
+                .map(mf -> {
+                    MultipartFileDecorator decorator = new MultipartFileDecorator(mf, UuidGenerator.next());
+                    decorator.setStorageEncoding(chooseStorageEncoding(mf));
+                    return decorator;
+                })
                 .collect(Collectors.toList());
 
+        // over-quota uploads are rejected before a single byte is written
+        checkQuota(user, Stream.of(files).mapToLong(MultipartFile::getSize).sum());
+
         List<MultipartFileDecorator> savedFiles = fileSystemUtil.saveFile(user.getUsername(), fileDecorators);
+        deleteBlobsOnRollback(blobsOf(user, savedFiles));
 
         // Save records about files
         List<FileRecord> fileRecords = new ArrayList<>();
         for(MultipartFileDecorator savedFile : savedFiles) {
-            fileRecords.add(toFile(user, savedFile));
+            FileRecord fileRecord = toFile(user, savedFile);
+            fileRecord.setParentId(folderId);
+            fileRecords.add(fileRecord);
         }
         fileRecords = fileRepository.saveAll(fileRecords);
+        blobRepository.saveAll(fileRecords.stream()
+                                          .map(file -> new BlobRecord(file.getBlobId(), user, file.getSize(), file.getVolume(), file.getSegment()))
+                                          .collect(Collectors.toList()));
 
         // Create and save edges/connection from all of the ancestors to the files (The Closure table)
-        FileRecord parent = fileRepository.getOne(folderId);
-        Set<FileRecord> ancestors = edgeRepository.serveAncestors(folderId);
+        subtreeLocks.lock(user, Collections.emptyList(), Collections.singleton(folderId));
+        // the folder may have been deleted while we waited for the lock
+        FileRecord parent = fileRepository.findByIdAndOwner(folderId, user)
+                                          .filter(folder -> !folder.getStatus().getCode().equals(Status.Code.DELETED))
+                                          .orElseThrow(() -> new RuntimeException("No folder with id [" + folderId + "] is found"));
+        // only the files that have been saved take space
+        quotaService.reserve(user, savedFiles.stream().mapToLong(savedFile -> savedFile.getMultipartFile().getSize()).sum());
+        Set<FileRecord> ancestors = edgeRepository.serveAncestors(user, folderId);
         ancestors.add(parent);
 
         List<Edge> edges = fileRecords.stream()
@@ -291,14 +591,163 @@ public class FileService {
 
         edgeRepository.saveAll(edges);
 
+        touchFolders(user, Collections.singleton(folderId));
+        List<ChangeRecord> changes = fileRecords.stream()
+                                                .map(file -> ChangeRecord.of(ChangeType.CREATED, file, folderId))
+                                                .collect(Collectors.toList());
+        changeJournalService.record(user, changes);
+        auditLog.record(user, AuditAction.UPLOAD, changes);
+
+        eventPublisher.publishEvent(new FilesUploadedEvent(user, fileRecords));
+
         return fileRecords.stream().map(this::toDto).collect(Collectors.toList());
     }
 
-    // Download single file
+    // Upload of a whole directory tree. 'paths' are the paths of 'files' relative to 'folderId' (e.g. "photos/2026/a.jpg"),
+    // the part's file name is used when a path is missing. Missing folders are created, everything is inserted in bulk.
+    @Transactional
+    public List<FileRecordDto> uploadTree(User user, UUID folderId, MultipartFile[] files, List<String> paths) {
+
+        // validate every path before a single byte is written
+        Map<UUID, List<String>> pathsById = new HashMap<>();
+        List<MultipartFileDecorator> fileDecorators = new ArrayList<>();
+        for(int i = 0; i < files.length; i++) {
+            String path = paths != null && i < paths.size() ? paths.get(i) : files[i].getOriginalFilename();
+            List<String> segments = RelativePath.segments(path);
+
+            MultipartFileDecorator decorator = new MultipartFileDecorator(files[i], UuidGenerator.next());
+            decorator.setStorageEncoding(chooseStorageEncoding(segments.get(segments.size() - 1), files[i].getSize()));
+            fileDecorators.add(decorator);
+            pathsById.put(decorator.getId(), segments);
+        }
+
+        checkQuota(user, Stream.of(files).mapToLong(MultipartFile::getSize).sum());
+
+        List<MultipartFileDecorator> savedFiles = fileSystemUtil.saveFile(user.getUsername(), fileDecorators);
+        deleteBlobsOnRollback(blobsOf(user, savedFiles));
+
+        List<ImportedFile> entries = savedFiles.stream()
+                .map(savedFile -> new ImportedFile(
+                        pathsById.get(savedFile.getId()),
+                        savedFile.getId(),
+                        savedFile.getVolume(),
+                        savedFile.getSegment(),
+                        savedFile.getMultipartFile().getSize(),
+                        savedFile.getStorageEncoding()))
+                .collect(Collectors.toList());
+
+        return importTree(user, folderId, entries, AuditAction.UPLOAD);
+    }
+
+    // Extracts a zip archive into 'folderId'. The archive is streamed entry by entry straight into storage, it is never
+    // held in memory. Entry names only become names of records (blobs are stored under generated ids), still
+    // names escaping the target folder reject the whole archive, and so do zip bombs (see BoundedZipInputStream).
+    @Transactional
+    public List<FileRecordDto> extractArchive(User user, UUID folderId, MultipartFile archive) throws IOException {
+
+        List<ImportedFile> entries = new ArrayList<>();
+        List<BlobLocation> writtenBlobs = new ArrayList<>();
+        deleteBlobsOnRollback(writtenBlobs);
+        // the extracted size is unknown upfront, extraction stops as soon as it exceeds what the user has left
+        long remainingBytes = quotaService.remaining(user);
+        long writtenBytes = 0;
+
+        try(InputStream in = archive.getInputStream();
+            BoundedZipInputStream zip = new BoundedZipInputStream(in, extractMaxEntries, extractMaxBytes, extractMaxRatio)) {
+
+            ZipEntry entry;
+            while((entry = zip.getNextEntry()) != null) {
+                List<String> path = RelativePath.segments(entry.getName());
+                if(entry.isDirectory()) {
+                    entries.add(ImportedFile.folder(path));
+                    continue;
+                }
+
+                if(writtenBytes + Math.max(entry.getSize(), 0) > remainingBytes)
+                    throw new BussinesException(BussinesException.Code.QUOTA_001);
+
+                String name = path.get(path.size() - 1);
+                StorageEncoding storageEncoding = chooseStorageEncoding(name, entry.getSize() < 0 ? MIN_COMPRESSIBLE_SIZE : entry.getSize());
+                BlobLocation blob = new BlobLocation(user.getUsername(), fileSystemUtil.placeBlob(), UuidGenerator.next());
+                writtenBlobs.add(blob);
+                long size = fileSystemUtil.saveStream(blob, zip, storageEncoding);
+                writtenBytes += size;
+
+                // the declared size may have been missing or wrong
+                if(writtenBytes > remainingBytes)
+                    throw new BussinesException(BussinesException.Code.QUOTA_001);
+
+                entries.add(new ImportedFile(path, blob.getBlobId(), blob.getVolume(), blob.getSegment(), size, storageEncoding));
+            }
+        }
+
+        return importTree(user, folderId, entries, AuditAction.EXTRACT);
+    }
+
+    // Points a blob (and every file sharing it) to the volume it has been copied to (see VolumeRebalancer).
+    // Returns false if the blob isn't on 'from' anymore, in which case the copy must be discarded.
     @Transactional
-    public ResourceDecorator downloadFile(User user, String fileId) {
+    public boolean relocateBlob(UUID blobId, String from, String to) {
+        if(blobRepository.relocate(blobId, from, to) == 0)
+            return false;
+        fileRepository.relocateBlob(blobId, to);
+        return true;
+    }
 
-        FileRecord fileRecord = fileRepository.findById(fileId).orElseThrow(() -> new RuntimeException("File [" + fileId + "] not found"));
+    // Points blobs (and every file sharing them) that have been copied out of segment 'from' to their new entries
+    // (see SegmentCompactor). Returns the number of blobs that still were in 'from'.
+    @Transactional
+    public int relocateSegmentEntries(UUID from, Map<UUID, SegmentEntry> entries) {
+        int relocated = 0;
+        for(Map.Entry<UUID, SegmentEntry> entry : entries.entrySet()) {
+            SegmentEntry to = entry.getValue();
+            if(blobRepository.relocateEntry(entry.getKey(), from, to.getSegmentId(), to.getOffset(), to.getLength()) == 0)
+                continue;
+            fileRepository.relocateEntry(entry.getKey(), to.getSegmentId(), to.getOffset(), to.getLength());
+            relocated++;
+        }
+        return relocated;
+    }
+
+    // Swaps the content of a file for a blob that has already been written (see DeltaSyncService).
+    // The blob's size must already be reserved, the old blob's bytes are released if no other file shares them.
+    @Transactional
+    public FileRecordDto replaceContent(User user, UUID fileId, long baseVersion, BlobLocation newBlob, long size) {
+
+        FileRecord file = fileRepository.findByIdAndOwner(fileId, user).orElseThrow(() -> new RuntimeException("File [" + fileId + "] not found"));
+        UUID oldBlobId = file.getBlobId();
+
+        LocalDateTime now = LocalDateTime.now();
+        if(fileRepository.replaceBlob(user, fileId, baseVersion, newBlob.getBlobId(), newBlob.getVolume(), size, now) == 0)
+            throw new BussinesException(BussinesException.Code.DELTA_001);
+
+        // keep the managed instance in line with the bulk update
+        file.setBlobId(newBlob.getBlobId());
+        file.setVolume(newBlob.getVolume());
+        file.setSegment(null);
+        file.setSize(size);
+        file.setVersion(baseVersion + 1);
+        file.setUpdatedAt(now);
+
+        blobRepository.save(new BlobRecord(newBlob.getBlobId(), user, size, newBlob.getVolume(), null));
+        blobRepository.addRefs(Collections.singleton(oldBlobId), -1);
+        quotaService.onDeleted(user, blobRepository.sumUnreferencedSize(Collections.singleton(oldBlobId)));
+
+        touchFolders(user, Collections.singleton(file.getParentId()));
+        List<ChangeRecord> changes = Collections.singletonList(ChangeRecord.of(ChangeType.MODIFIED, file, file.getParentId()));
+        changeJournalService.record(user, changes);
+        auditLog.record(user, AuditAction.MODIFY, changes);
+        eventPublisher.publishEvent(new FileContentsChangedEvent(Collections.singleton(fileId)));
+
+        return toDto(file);
+    }
+
+    // Download single file. 'notModified' is asked once the representation is known (version, encoding), the content
+    // isn't touched for a conditional request it answers, the returned decorator has no resource then.
+    @Transactional
+    public ResourceDecorator downloadFile(User user, UUID fileId, boolean acceptsGzip, Predicate<ResourceDecorator> notModified) throws IOException {
+
+        FileRecord fileRecord = fileRepository.findByIdAndOwner(fileId, user).orElseThrow(() -> new RuntimeException("File [" + fileId + "] not found"));
 
         // Check if the file has been deleted by owner
         if(fileRecord.getStatus().getCode().equals(Status.Code.DELETED)) {
@@ -307,15 +756,190 @@ public class FileService {
 
         ResourceDecorator resourceDecorator = new ResourceDecorator();
 
-        File file = fileSystemUtil.serveFile(user.getUsername(), fileId, fileRecord.getExtension());
-        resourceDecorator.setResource(new FileSystemResource(file));
         resourceDecorator.setOriginalName(fileRecord.getName());
+        resourceDecorator.setVersion(fileRecord.getVersion());
+        resourceDecorator.setLastModified(fileRecord.getUpdatedAt());
+
+        // Send the stored bytes as they are if the client can decode them, otherwise decompress on the fly
+        boolean sendStored = fileRecord.getStorageEncoding() == StorageEncoding.IDENTITY || acceptsGzip;
+        resourceDecorator.setContentEncoding(sendStored ? fileRecord.getStorageEncoding() : StorageEncoding.IDENTITY);
+        if(notModified.test(resourceDecorator))
+            return resourceDecorator;
+
+        BlobLocation blob = locateBlob(user, fileRecord);
+        Optional<ByteBuffer> hot = serveHotFile(fileRecord, blob);
+        if(sendStored) {
+            Resource stored = hot.isPresent() ? new ByteBufferResource(hot.get()) : fileSystemUtil.serveStoredFile(blob);
+            resourceDecorator.setResource(stored);
+            resourceDecorator.setContentLength(stored.contentLength());
+        } else {
+            resourceDecorator.setResource(hot.isPresent()
+                    ? fileSystemUtil.serveDecodedBytes(hot.get(), fileRecord.getStorageEncoding())
+                    : fileSystemUtil.serveDecodedFile(blob, fileRecord.getStorageEncoding()));
+            resourceDecorator.setContentLength(fileRecord.getSize());
+        }
 
         return resourceDecorator;
     }
 
+    // Where the bytes of a file of 'user' are. <volume>/<username>/<blobId> paths are scoped by the owner, entries of
+    // segments (shared by all users) are not: their location is read from the owner's blob row instead of being
+    // trusted as copied into the file record, it is also the row SegmentCompactor switches first.
+    @Transactional(readOnly = true)
+    public BlobLocation locateBlob(User user, FileRecord file) {
+        if(file.getSegment() == null)
+            return new BlobLocation(user.getUsername(), file.getVolume(), file.getBlobId());
+
+        BlobRecord blob = blobRepository.findByIdAndOwner(file.getBlobId(), user)
+                                        .orElseThrow(() -> new RuntimeException("Blob of file [" + file.getId() + "] not found"));
+        return new BlobLocation(user.getUsername(), blob.getVolume(), blob.getId(), blob.getSegment());
+    }
+
+    // Where a blob of 'user' is right now, always read from its row. For readers that hold on to a location for long
+    // (archive jobs may wait in the queue and run for a long time), old copies are deleted after a grace period.
+    @Transactional(readOnly = true)
+    public BlobLocation locateBlob(User user, UUID blobId) {
+        BlobRecord blob = blobRepository.findByIdAndOwner(blobId, user)
+                                        .orElseThrow(() -> new RuntimeException("Blob [" + blobId + "] not found"));
+        return new BlobLocation(user.getUsername(), blob.getVolume(), blob.getId(), blob.getSegment());
+    }
+
     // HELPER OPERATIONS
 
+    // Stored bytes of small files that are requested often enough are kept in HotFileCache. Entries are keyed by file id
+    // only, so 'file' must have been looked up by its owner, and only actual reads count towards its frequency.
+    private Optional<ByteBuffer> serveHotFile(FileRecord file, BlobLocation blob) throws IOException {
+        Optional<ByteBuffer> cached = hotFileCache.get(file.getId(), file.getVersion());
+        if(cached.isPresent() || !hotFileCache.admits(file.getId(), file.getSize()))
+            return cached;
+
+        return Optional.of(hotFileCache.put(file.getId(), file.getVersion(), fileSystemUtil.readStoredBytes(blob)));
+    }
+
+    // Rejects an upload of 'bytes' before anything is written to disk. Only a check, the bytes are reserved in the
+    // upload's transaction once the files are written and the destination is locked (see QuotaService).
+    private void checkQuota(User user, long bytes) {
+        if(bytes > 0 && bytes > quotaService.remaining(user))
+            throw new BussinesException(BussinesException.Code.QUOTA_001);
+    }
+
+    // Blobs written by a transaction that doesn't commit are referenced by nothing, 'blobs' may grow until then
+    private void deleteBlobsOnRollback(List<BlobLocation> blobs) {
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if(status != STATUS_COMMITTED)
+                    fileSystemUtil.deleteBlobs(blobs);
+            }
+        });
+    }
+
+    private List<BlobLocation> blobsOf(User user, List<MultipartFileDecorator> savedFiles) {
+        return savedFiles.stream()
+                         .map(savedFile -> new BlobLocation(user.getUsername(), savedFile.getVolume(), savedFile.getId(), savedFile.getSegment()))
+                         .collect(Collectors.toList());
+    }
+
+    private void touchFolders(User user, Collection<UUID> folderIds) {
+        if(folderIds.isEmpty())
+            return;
+
+        fileRepository.bumpVersions(user, folderIds, LocalDateTime.now());
+        eventPublisher.publishEvent(new FoldersChangedEvent(new HashSet<>(folderIds)));
+    }
+
+    // Creates records of imported files/folders (and of the folders on their paths) under 'folderId'.
+    // Ancestors of the target folder are loaded once, all records, blobs and edges are inserted in jdbc batches.
+    // Returns the direct children of 'folderId' that have been created.
+    private List<FileRecordDto> importTree(User user, UUID folderId, List<ImportedFile> entries, AuditAction action) {
+
+        subtreeLocks.lock(user, Collections.emptyList(), Collections.singleton(folderId));
+
+        FileRecord destFolder = fileRepository.findByIdAndOwner(folderId, user)
+                                              .filter(folder -> folder.getFileType().equals(FileType.FOLDER))
+                                              .filter(folder -> !folder.getStatus().getCode().equals(Status.Code.DELETED))
+                                              .orElseThrow(() -> new RuntimeException("No folder with id [" + folderId + "] is found"));
+        quotaService.reserve(user, entries.stream().mapToLong(ImportedFile::getSize).sum());
+
+        Status enabled = statusRepository.findByCode(Status.Code.ENABLED);
+        TreeImport tree = new TreeImport(user, enabled, destFolder,
+                                         new ArrayList<>(Utils.append(edgeRepository.serveAncestors(user, folderId), destFolder)),
+                                         (parentId, name) -> findFolderToMerge(user, enabled, parentId, name));
+
+        List<FileRecord> files = new ArrayList<>();
+        for(ImportedFile entry : entries) {
+            if(entry.isFolder()) {
+                tree.folder(entry.getPath());
+                continue;
+            }
+
+            String name = entry.getPath().get(entry.getPath().size() - 1);
+            FileRecord file = FileRecord.createFile(entry.getBlobId(), name, extractExt(name), entry.getSize(), entry.getStorageEncoding(), user, tree.enabled);
+            file.setVolume(entry.getVolume());
+            file.setSegment(entry.getSegment());
+            tree.add(file, tree.folder(entry.getPath().subList(0, entry.getPath().size() - 1)));
+            files.add(file);
+        }
+
+        fileRepository.saveAll(tree.records);
+        blobRepository.saveAll(files.stream()
+                                    .map(file -> new BlobRecord(file.getBlobId(), user, file.getSize(), file.getVolume(), file.getSegment()))
+                                    .collect(Collectors.toList()));
+        edgeRepository.saveAll(tree.edges);
+
+        touchFolders(user, Utils.append(new ArrayList<>(tree.merged), folderId));
+        List<ChangeRecord> changes = tree.records.stream()
+                                                 .map(record -> ChangeRecord.of(ChangeType.CREATED, record, record.getParentId()))
+                                                 .collect(Collectors.toList());
+        changeJournalService.record(user, changes);
+        auditLog.record(user, action, changes);
+
+        eventPublisher.publishEvent(new FilesUploadedEvent(user, files));
+
+        return tree.topLevel.stream().map(this::toDto).collect(Collectors.toList());
+    }
+
+    // An existing folder that imported files with the same path go into. It is locked like the destination folder,
+    // the second lookup makes sure it hasn't been moved or deleted before the lock was granted.
+    private Optional<FileRecord> findFolderToMerge(User user, Status enabled, UUID parentId, String name) {
+        Optional<FileRecord> folder = fileRepository.findFirstByOwnerAndParentIdAndNameAndFileTypeAndStatus(user, parentId, name, FileType.FOLDER, enabled);
+        if(!folder.isPresent())
+            return folder;
+
+        subtreeLocks.lock(user, Collections.emptyList(), Collections.singleton(folder.get().getId()));
+        return fileRepository.findFirstByOwnerAndParentIdAndNameAndFileTypeAndStatus(user, parentId, name, FileType.FOLDER, enabled)
+                             .filter(locked -> locked.getId().equals(folder.get().getId()));
+    }
+
+    // Points copies to the current location of their blobs. The blob rows stay locked until the copies are committed,
+    // a relocation either finished before (and is read here) or waits and then updates the copies too.
+    private void relocateCopies(List<FileRecord> copies, Set<UUID> blobIds) {
+        if(blobIds.isEmpty())
+            return;
+
+        Map<UUID, Object[]> locations = new HashMap<>();
+        for(Object[] row : blobRepository.lockLocations(blobIds))
+            locations.put(UUID.fromString((String) row[0]), row);
+
+        for(FileRecord copy : copies) {
+            Object[] location = copy.getBlobId() == null ? null : locations.get(copy.getBlobId());
+            if(location == null)
+                continue;
+
+            copy.setVolume((String) location[1]);
+            copy.setSegment(location[2] == null ? null : new SegmentEntry(UUID.fromString((String) location[2]),
+                                                                          ((Number) location[3]).longValue(),
+                                                                          ((Number) location[4]).intValue()));
+        }
+    }
+
+    // One bulk update per distinct count instead of one update per blob
+    private void addBlobRefs(Map<UUID, Integer> refsByBlob, int sign) {
+        refsByBlob.entrySet().stream()
+                  .collect(Collectors.groupingBy(Map.Entry::getValue, Collectors.mapping(Map.Entry::getKey, Collectors.toList())))
+                  .forEach((count, blobIds) -> blobRepository.addRefs(blobIds, sign * count));
+    }
+
     private List<TreeNode> buildTree(List<FileRecord> files) {
         List<TreeNode> nodes = new ArrayList<>();
 
@@ -327,8 +951,13 @@ public class FileService {
             if(file.getFileType().equals(FileType.FILE)) {
                 FileTreeNode treeNode = new FileTreeNode();
                 treeNode.setId(file.getId());
+                treeNode.setBlobId(file.getBlobId());
+                treeNode.setVolume(file.getVolume());
+                treeNode.setSegment(file.getSegment());
                 treeNode.setType(TreeNode.Type.FILE);
                 treeNode.setName(file.getName());
+                treeNode.setStorageEncoding(file.getStorageEncoding());
+                treeNode.setSize(file.getSize());
                 nodes.add(treeNode);
                 continue;
             }
@@ -339,7 +968,7 @@ public class FileService {
                 folderTreeNode.setName(file.getName());
                 folderTreeNode.setType(TreeNode.Type.FOLDER);
 
-                List<FileRecord> subFiles = edgeRepository.serveDescendants(file.getId(), EdgeType.DIRECT);
+                List<FileRecord> subFiles = edgeRepository.serveDescendants(file.getOwner(), file.getId(), EdgeType.DIRECT);
 
                 folderTreeNode.setSubnodes(buildTree(subFiles));
                 nodes.add(folderTreeNode);
@@ -359,18 +988,35 @@ public class FileService {
         return fileOriginalName.substring(lastIndexOfDot);
     }
 
+    private StorageEncoding chooseStorageEncoding(MultipartFile file) {
+        return chooseStorageEncoding(file.getOriginalFilename(), file.getSize());
+    }
+
+    private StorageEncoding chooseStorageEncoding(String fileName, long size) {
+        String ext = extractExt(fileName).toLowerCase();
+        if(size >= MIN_COMPRESSIBLE_SIZE && COMPRESSIBLE_EXTENSIONS.contains(ext))
+            return StorageEncoding.GZIP;
+
+        return StorageEncoding.IDENTITY;
+    }
+
     private FileRecord toFile(User owner, MultipartFileDecorator savedFile) {
         MultipartFile mFile = savedFile.getMultipartFile();
 
         Status enabled = statusRepository.findByCode(Status.Code.ENABLED);
 
-        return FileRecord.createFile(
-                savedFile.getName(),
+        FileRecord file = FileRecord.createFile(
+                savedFile.getId(),
                 mFile.getOriginalFilename(),
                 extractExt(mFile.getOriginalFilename()),
                 mFile.getSize(),
+                savedFile.getStorageEncoding(),
                 owner, enabled
         );
+        file.setVolume(savedFile.getVolume());
+        file.setSegment(savedFile.getSegment());
+
+        return file;
     }
 
     private FileRecordDto toDto (FileRecord fileRecord) {
@@ -380,12 +1026,24 @@ public class FileService {
         dto.setType(fileRecord.getFileType());
         dto.setSize(fileRecord.getSize());
         dto.setLastUpdate(fileRecord.getUpdatedAt());
+        dto.setVersion(fileRecord.getVersion());
+        return dto;
+    }
+
+    // A subfolder's version and update time change with its own children, which doesn't change the version of the listed
+    // folder (the key and ETag of the cached listing), so listings leave them out. Ask the subfolder's own listing instead.
+    private FileRecordDto toListingDto(FileRecord fileRecord) {
+        FileRecordDto dto = toDto(fileRecord);
+        if(fileRecord.getFileType().equals(FileType.FOLDER)) {
+            dto.setVersion(null);
+            dto.setLastUpdate(null);
+        }
         return dto;
     }
 
     private Edge toEdge(User owner, FileRecord parent, FileRecord ancestor, FileRecord descendant) {
         Edge edge = new Edge();
-        edge.setId(UUID.randomUUID().toString());
+        edge.setId(UuidGenerator.next());
         edge.setAncestor(ancestor);
         edge.setDescendant(descendant);
         edge.setEdgeOwner(owner);
@@ -397,4 +1055,75 @@ public class FileService {
         return edge;
     }
 
+    // Records and closure edges of a tree being imported into 'dest', folders are created on first use
+    private static class TreeImport {
+
+        private final User owner;
+        private final Status enabled;
+        private final FileRecord dest;
+
+        private final List<FileRecord> records = new ArrayList<>();
+        private final List<Edge> edges = new ArrayList<>();
+        private final List<FileRecord> topLevel = new ArrayList<>();
+        // ids of existing folders that get new children
+        private final Set<UUID> merged = new HashSet<>();
+        // relative path ("a/b") -> folder
+        private final Map<String, FileRecord> foldersByPath = new HashMap<>();
+        // folder id -> the folder and all of its ancestors
+        private final Map<UUID, List<FileRecord>> lineages = new HashMap<>();
+        // (parent id, name) -> existing folder
+        private final BiFunction<UUID, String, Optional<FileRecord>> existingFolders;
+
+        TreeImport(User owner, Status enabled, FileRecord dest, List<FileRecord> destLineage,
+                   BiFunction<UUID, String, Optional<FileRecord>> existingFolders) {
+            this.owner = owner;
+            this.enabled = enabled;
+            this.dest = dest;
+            this.existingFolders = existingFolders;
+            this.lineages.put(dest.getId(), destLineage);
+        }
+
+        FileRecord folder(List<String> path) {
+            if(path.isEmpty())
+                return dest;
+
+            String key = String.join("/", path);
+            FileRecord folder = foldersByPath.get(key);
+            if(folder == null) {
+                FileRecord parent = folder(path.subList(0, path.size() - 1));
+                String name = path.get(path.size() - 1);
+                // folders created by this import can't have existing children
+                boolean existingParent = parent == dest || merged.contains(parent.getId());
+                Optional<FileRecord> existing = existingParent ? existingFolders.apply(parent.getId(), name) : Optional.empty();
+                if(existing.isPresent()) {
+                    folder = existing.get();
+                    merged.add(folder.getId());
+                    if(parent == dest)
+                        topLevel.add(folder);
+                    lineages.put(folder.getId(), Utils.append(new ArrayList<>(lineages.get(parent.getId())), folder));
+                } else {
+                    folder = FileRecord.createFolder(UuidGenerator.next(), name, owner, enabled);
+                    add(folder, parent);
+                }
+                foldersByPath.put(key, folder);
+            }
+
+            return folder;
+        }
+
+        void add(FileRecord record, FileRecord parent) {
+            record.setParentId(parent.getId());
+            records.add(record);
+            if(parent == dest)
+                topLevel.add(record);
+
+            List<FileRecord> lineage = lineages.get(parent.getId());
+            for(FileRecord ancestor : lineage)
+                edges.add(new Edge(UuidGenerator.next(), ancestor, record, ancestor == parent ? EdgeType.DIRECT : EdgeType.INDIRECT, owner));
+
+            if(record.getFileType().equals(FileType.FOLDER))
+                lineages.put(record.getId(), Utils.append(new ArrayList<>(lineage), record));
+        }
+    }
+
 }
@@ -0,0 +1,134 @@
+package edu.myrza.todoapp.service;
+
+/*
+*  Bounded LRU cache of folder listings (direct children), keyed by folder id and folder version.
+*
+*  A folder's version is bumped by every mutation of its direct children (see FileService.touchFolders), so a
+*  listing cached under an old version is never served. FileService evicts touched folders after commit to free
+*  memory right away. Only the latest version of a folder is kept.
+*
+*  The cache is bounded by an estimate of retained heap, not by the number of entries, because listings of
+*  shared team roots are orders of magnitude bigger than listings of ordinary folders.
+* */
+
+import edu.myrza.todoapp.event.FoldersChangedEvent;
+import edu.myrza.todoapp.model.dto.files.FileRecordDto;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.AllArgsConstructor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+@Component
+public class FolderContentCache {
+
+    // rough retained size of a FileRecordDto without its name (object headers, fields, uuid, LocalDateTime)
+    private static final long DTO_OVERHEAD_BYTES = 160;
+    private static final long ENTRY_OVERHEAD_BYTES = 128;
+
+    private final long maxBytes;
+    private final LinkedHashMap<UUID, Entry> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private long currentBytes;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    @Autowired
+    public FolderContentCache(@Value("${file.listing-cache.max-bytes:67108864}") long maxBytes, MeterRegistry meterRegistry) {
+        this.maxBytes = maxBytes;
+
+        FunctionCounter.builder("folder.content.cache.hits", hits, LongAdder::sum).register(meterRegistry);
+        FunctionCounter.builder("folder.content.cache.misses", misses, LongAdder::sum).register(meterRegistry);
+        FunctionCounter.builder("folder.content.cache.evictions", evictions, LongAdder::sum).register(meterRegistry);
+        Gauge.builder("folder.content.cache.size", this, FolderContentCache::size).register(meterRegistry);
+        Gauge.builder("folder.content.cache.bytes", this, FolderContentCache::bytes).baseUnit("bytes").register(meterRegistry);
+    }
+
+    public List<FileRecordDto> get(UUID folderId, long version, Supplier<List<FileRecordDto>> loader) {
+
+        synchronized (this) {
+            Entry entry = entries.get(folderId);
+            if(entry != null && entry.version == version) {
+                hits.increment();
+                return entry.content;
+            }
+        }
+
+        misses.increment();
+        List<FileRecordDto> content = Collections.unmodifiableList(loader.get());
+        put(folderId, version, content);
+
+        return content;
+    }
+
+    @TransactionalEventListener
+    public void onFoldersChanged(FoldersChangedEvent event) {
+        evict(event.getFolderIds());
+    }
+
+    public synchronized void evict(Collection<UUID> folderIds) {
+        for(UUID folderId : folderIds) {
+            Entry entry = entries.remove(folderId);
+            if(entry != null)
+                currentBytes -= entry.bytes;
+        }
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long bytes() {
+        return currentBytes;
+    }
+
+    private synchronized void put(UUID folderId, long version, List<FileRecordDto> content) {
+
+        long bytes = estimateBytes(content);
+        if(bytes > maxBytes / 4) // a single huge listing shouldn't wipe out the whole cache
+            return;
+
+        // a slower loader may come back with an older version, keep the newer one
+        Entry existing = entries.get(folderId);
+        if(existing != null) {
+            if(existing.version > version)
+                return;
+            entries.remove(folderId);
+            currentBytes -= existing.bytes;
+        }
+
+        entries.put(folderId, new Entry(version, content, bytes));
+        currentBytes += bytes;
+
+        Iterator<Entry> lru = entries.values().iterator();
+        while(currentBytes > maxBytes && lru.hasNext()) {
+            Entry eldest = lru.next();
+            lru.remove();
+            currentBytes -= eldest.bytes;
+            evictions.increment();
+        }
+    }
+
+    private long estimateBytes(List<FileRecordDto> content) {
+        long bytes = ENTRY_OVERHEAD_BYTES;
+        for(FileRecordDto dto : content)
+            bytes += DTO_OVERHEAD_BYTES + (dto.getName() == null ? 0 : 2L * dto.getName().length());
+        return bytes;
+    }
+
+    @AllArgsConstructor
+    private static class Entry {
+        private final long version;
+        private final List<FileRecordDto> content;
+        private final long bytes;
+    }
+
+}
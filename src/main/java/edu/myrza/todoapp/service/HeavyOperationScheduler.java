@@ -0,0 +1,167 @@
+package edu.myrza.todoapp.service;
+
+/*
+*  Admission control for heavy operations (archive builds, large uploads).
+*
+*  Every kind of operation has its own lane with a fixed number of concurrent slots and a bounded wait queue.
+*  Queued requests are granted slots round-robin across users, so one user firing a burst of requests can't
+*  starve everybody else. When the queue (or the user's share of it) is full, or a request waited too long,
+*  ServiceOverloadedException is thrown and the client gets a fast '503' instead of timing out while CPU,
+*  disk and heap are saturated.
+*
+*  Slots must be acquired before a db transaction is opened, so waiting requests don't hold connections.
+* */
+
+import edu.myrza.todoapp.exceptions.ServiceOverloadedException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+
+@Service
+public class HeavyOperationScheduler {
+
+    public enum Kind { ARCHIVE, UPLOAD }
+
+    // Releases the slot, it is safe to close a permit more than once
+    public interface Permit extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    private final Map<Kind, Lane> lanes = new EnumMap<>(Kind.class);
+    private final long retryAfterSeconds;
+
+    @Autowired
+    public HeavyOperationScheduler(Environment env) {
+        this.retryAfterSeconds = env.getProperty("heavy-ops.retry-after-seconds", Long.class, 10L);
+        for(Kind kind : Kind.values()) {
+            String prefix = "heavy-ops." + kind.name().toLowerCase();
+            lanes.put(kind, new Lane(
+                    kind,
+                    env.getProperty(prefix + ".max-concurrent", Integer.class, 4),
+                    env.getProperty(prefix + ".max-queued", Integer.class, 32),
+                    env.getProperty(prefix + ".max-queued-per-user", Integer.class, 4),
+                    env.getProperty(prefix + ".max-wait-seconds", Long.class, 30L) * 1000));
+        }
+    }
+
+    public Permit acquire(Kind kind, String username) {
+        return lanes.get(kind).acquire(username);
+    }
+
+    private class Lane {
+
+        private final Kind kind;
+        private final int maxConcurrent;
+        private final int maxQueued;
+        private final int maxQueuedPerUser;
+        private final long maxWaitMillis;
+
+        private int running;
+        private int queued;
+        // username -> waiting tickets. Users are served in insertion order and moved to the end after being served.
+        private final LinkedHashMap<String, Deque<Ticket>> queues = new LinkedHashMap<>();
+
+        Lane(Kind kind, int maxConcurrent, int maxQueued, int maxQueuedPerUser, long maxWaitMillis) {
+            this.kind = kind;
+            this.maxConcurrent = maxConcurrent;
+            this.maxQueued = maxQueued;
+            this.maxQueuedPerUser = maxQueuedPerUser;
+            this.maxWaitMillis = maxWaitMillis;
+        }
+
+        synchronized Permit acquire(String username) {
+
+            if(running < maxConcurrent && queued == 0) {
+                running++;
+                return newPermit();
+            }
+
+            Deque<Ticket> userQueue = queues.get(username);
+            int userQueued = userQueue == null ? 0 : userQueue.size();
+            if(queued >= maxQueued || userQueued >= maxQueuedPerUser)
+                throw overloaded();
+
+            Ticket ticket = new Ticket();
+            queues.computeIfAbsent(username, u -> new ArrayDeque<>()).addLast(ticket);
+            queued++;
+
+            long deadline = System.currentTimeMillis() + maxWaitMillis;
+            try {
+                while(!ticket.granted) {
+                    long remaining = deadline - System.currentTimeMillis();
+                    if(remaining <= 0) {
+                        dequeue(username, ticket);
+                        throw overloaded();
+                    }
+                    wait(remaining);
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                if(ticket.granted)
+                    release();
+                else
+                    dequeue(username, ticket);
+                throw overloaded();
+            }
+
+            return newPermit();
+        }
+
+        synchronized void release() {
+            running--;
+
+            while(running < maxConcurrent && queued > 0) {
+                Iterator<Map.Entry<String, Deque<Ticket>>> it = queues.entrySet().iterator();
+                Map.Entry<String, Deque<Ticket>> next = it.next();
+                it.remove();
+
+                Ticket ticket = next.getValue().pollFirst();
+                if(!next.getValue().isEmpty())
+                    queues.put(next.getKey(), next.getValue()); // to the end of the line
+
+                ticket.granted = true;
+                running++;
+                queued--;
+            }
+
+            notifyAll();
+        }
+
+        private void dequeue(String username, Ticket ticket) {
+            Deque<Ticket> userQueue = queues.get(username);
+            if(userQueue != null && userQueue.remove(ticket)) {
+                queued--;
+                if(userQueue.isEmpty())
+                    queues.remove(username);
+            }
+        }
+
+        private Permit newPermit() {
+            return new Permit() {
+                private boolean closed;
+
+                @Override
+                public void close() {
+                    synchronized (Lane.this) {
+                        if(closed)
+                            return;
+                        closed = true;
+                        release();
+                    }
+                }
+            };
+        }
+
+        private ServiceOverloadedException overloaded() {
+            return new ServiceOverloadedException("Too many " + kind.name().toLowerCase() + " operations in progress", retryAfterSeconds);
+        }
+    }
+
+    private static class Ticket {
+        private boolean granted;
+    }
+
+}
@@ -0,0 +1,155 @@
+package edu.myrza.todoapp.service;
+
+/*
+*  Off-heap cache of the stored bytes of small, frequently downloaded files, keyed by file id and file version.
+*
+*  Contents are kept in direct byte buffers, so a large cache doesn't grow the heap the collector has to trace, and
+*  hits are served straight from them without opening the file. A file is admitted only after it has been asked for
+*  a few times (TinyLFU): a one-off download of a file never pushes a hot one out, and once the cache is full a new
+*  file replaces the least recently used one only if it is requested more often (see FrequencySketch).
+*
+*  A file's version is bumped whenever its content changes, so bytes cached under an old version are never served.
+*  FileService evicts deleted and overwritten files after commit to free the memory right away. Memory of an evicted
+*  buffer is given back when the buffer is collected, so -XX:MaxDirectMemorySize must leave room above max-bytes.
+* */
+
+import edu.myrza.todoapp.event.FileContentsChangedEvent;
+import edu.myrza.todoapp.util.FrequencySketch;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.AllArgsConstructor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+
+@Component
+public class HotFileCache {
+
+    // a file has to be requested that many times (recently) before it is cached
+    private static final int MIN_ADMIT_FREQUENCY = 3;
+
+    private final long maxBytes;
+    private final int maxEntryBytes;
+    private final LinkedHashMap<UUID, Entry> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private final FrequencySketch sketch;
+    private long currentBytes;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    @Autowired
+    public HotFileCache(
+            @Value("${file.hot-cache.max-bytes:67108864}") long maxBytes,
+            @Value("${file.hot-cache.max-entry-bytes:65536}") int maxEntryBytes,
+            MeterRegistry meterRegistry)
+    {
+        this.maxBytes = maxBytes;
+        this.maxEntryBytes = maxEntryBytes;
+        // enough counters to tell apart ten times as many files as fit into the cache
+        this.sketch = new FrequencySketch((int) Math.min(Integer.MAX_VALUE / 8, 10 * maxBytes / Math.max(maxEntryBytes, 1)));
+
+        FunctionCounter.builder("file.hot.cache.hits", hits, LongAdder::sum).register(meterRegistry);
+        FunctionCounter.builder("file.hot.cache.misses", misses, LongAdder::sum).register(meterRegistry);
+        FunctionCounter.builder("file.hot.cache.evictions", evictions, LongAdder::sum).register(meterRegistry);
+        Gauge.builder("file.hot.cache.size", this, HotFileCache::size).register(meterRegistry);
+        Gauge.builder("file.hot.cache.bytes", this, HotFileCache::bytes).baseUnit("bytes").register(meterRegistry);
+    }
+
+    // Stored bytes of the file version, counts as an access to the file
+    public synchronized Optional<ByteBuffer> get(UUID fileId, long version) {
+        sketch.increment(fileId);
+
+        Entry entry = entries.get(fileId);
+        if(entry != null && entry.version == version) {
+            hits.increment();
+            return Optional.of(entry.content.duplicate());
+        }
+
+        misses.increment();
+        return Optional.empty();
+    }
+
+    // Whether a file that has just missed would be cached, so it is only read into memory if it would
+    public synchronized boolean admits(UUID fileId, long size) {
+        if(size > maxEntryBytes || maxBytes <= 0)
+            return false;
+
+        int frequency = sketch.frequency(fileId);
+        if(frequency < MIN_ADMIT_FREQUENCY)
+            return false;
+        if(currentBytes + size <= maxBytes || entries.isEmpty())
+            return true;
+
+        UUID victim = entries.keySet().iterator().next();
+        return frequency > sketch.frequency(victim);
+    }
+
+    // Copies 'stored' off-heap and caches it, returns the cached bytes
+    public ByteBuffer put(UUID fileId, long version, byte[] stored) {
+
+        ByteBuffer content = ByteBuffer.allocateDirect(stored.length);
+        content.put(stored);
+        content.flip();
+        content = content.asReadOnlyBuffer();
+
+        synchronized (this) {
+            // a slower loader may come back with an older version, keep the newer one
+            Entry existing = entries.get(fileId);
+            if(existing != null) {
+                if(existing.version > version)
+                    return content;
+                entries.remove(fileId);
+                currentBytes -= existing.bytes;
+            }
+
+            Iterator<Entry> lru = entries.values().iterator();
+            while(currentBytes + stored.length > maxBytes && lru.hasNext()) {
+                Entry eldest = lru.next();
+                lru.remove();
+                currentBytes -= eldest.bytes;
+                evictions.increment();
+            }
+
+            entries.put(fileId, new Entry(version, content, stored.length));
+            currentBytes += stored.length;
+        }
+
+        return content.duplicate();
+    }
+
+    @TransactionalEventListener
+    public void onFileContentsChanged(FileContentsChangedEvent event) {
+        evict(event.getFileIds());
+    }
+
+    public synchronized void evict(Collection<UUID> fileIds) {
+        for(UUID fileId : fileIds) {
+            Entry entry = entries.remove(fileId);
+            if(entry != null)
+                currentBytes -= entry.bytes;
+        }
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long bytes() {
+        return currentBytes;
+    }
+
+    @AllArgsConstructor
+    private static class Entry {
+        private final long version;
+        private final ByteBuffer content;
+        private final long bytes;
+    }
+
+}
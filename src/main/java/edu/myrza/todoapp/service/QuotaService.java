@@ -0,0 +1,70 @@
+package edu.myrza.todoapp.service;
+
+/*
+*  Per-user storage quota.
+*
+*  Usage counters are maintained incrementally, so the admission check is a single conditional update
+*  (O(1), no summing of file sizes). Uploads check 'remaining' before anything is written to disk and reserve the
+*  written bytes at the end, in their own transaction: the reservation needs no second connection and rolls back
+*  with a failed upload. The reservation locks the user's usage row until the upload commits, so parallel uploads
+*  of the same user queue up there (not while writing to disk) and the later one sees what the earlier one used.
+* */
+
+import edu.myrza.todoapp.exceptions.BussinesException;
+import edu.myrza.todoapp.model.entity.User;
+import edu.myrza.todoapp.model.entity.UserStorage;
+import edu.myrza.todoapp.repos.UserStorageRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+@Service
+public class QuotaService {
+
+    private final UserStorageRepository userStorageRepository;
+    private final long defaultQuota;
+
+    @Autowired
+    public QuotaService(UserStorageRepository userStorageRepository, @Value("${file.storage.quota-bytes}") long defaultQuota) {
+        this.userStorageRepository = userStorageRepository;
+        this.defaultQuota = defaultQuota;
+    }
+
+    @Transactional
+    public void initialize(User user) {
+        userStorageRepository.save(new UserStorage(user.getId()));
+    }
+
+    // Joins the caller's transaction, if there is one
+    @Transactional
+    public void reserve(User user, long bytes) {
+        if(bytes <= 0)
+            return;
+
+        if(userStorageRepository.reserve(user.getId(), bytes, defaultQuota) == 0)
+            throw new BussinesException(BussinesException.Code.QUOTA_001);
+    }
+
+    // Bytes the user may still upload. Read on the primary, a lagging replica would keep rejecting uploads after a deletion.
+    @Transactional
+    public long remaining(User user) {
+        return userStorageRepository.remaining(user.getId(), defaultQuota).orElse(defaultQuota);
+    }
+
+    // Gives back bytes reserved outside of any transaction by an upload that didn't make it (see DeltaSyncService)
+    @Transactional
+    public void release(User user, long bytes) {
+        if(bytes > 0)
+            userStorageRepository.release(user.getId(), bytes);
+    }
+
+    // Deleted files stop counting towards the quota. Runs in the deleting transaction, so it rolls back with it.
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void onDeleted(User user, long bytes) {
+        if(bytes > 0)
+            userStorageRepository.release(user.getId(), bytes);
+    }
+
+}
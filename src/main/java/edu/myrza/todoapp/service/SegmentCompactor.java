@@ -0,0 +1,131 @@
+package edu.myrza.todoapp.service;
+
+/*
+*  Reclaims space of deleted entries in segment files (see SegmentStore).
+*
+*  A sealed segment whose live entries take less than 'file.storage.packed.compact-below' of it is rewritten: live
+*  entries are appended to the active segment of the same volume, the db is switched to the new entries in one
+*  transaction, and the old segment is deleted after 'file.storage.packed.grace-millis' (readers that resolved an
+*  old entry just before the switch keep reading it). Segments without live entries are just deleted after the grace
+*  period. Entries of uploads that never committed have no blob rows, so they are dropped the same way.
+*
+*  Pending deletions live in this JVM only, and the compactor must run on a single instance: it is opt-in
+*  (file.storage.packed.compaction.enabled=true), enable it on exactly one of them.
+* */
+
+import edu.myrza.todoapp.model.entity.BlobRecord;
+import edu.myrza.todoapp.model.entity.SegmentEntry;
+import edu.myrza.todoapp.repos.BlobRepository;
+import edu.myrza.todoapp.util.SegmentStore;
+import edu.myrza.todoapp.util.StorageVolumes;
+import lombok.AllArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+@Service
+public class SegmentCompactor {
+
+    private static final Logger log = LoggerFactory.getLogger(SegmentCompactor.class);
+
+    private final FileService fileService;
+    private final SegmentStore segmentStore;
+    private final StorageVolumes storageVolumes;
+    private final BlobRepository blobRepository;
+    private final boolean enabled;
+    private final double compactBelow;
+    private final long graceMillis;
+
+    private final Queue<PendingDeletion> pendingDeletions = new ConcurrentLinkedQueue<>();
+    // segments already rewritten and waiting for deletion
+    private final Set<UUID> compacted = ConcurrentHashMap.newKeySet();
+
+    @Autowired
+    public SegmentCompactor(
+            FileService fileService,
+            SegmentStore segmentStore,
+            StorageVolumes storageVolumes,
+            BlobRepository blobRepository,
+            @Value("${file.storage.packed.compaction.enabled:false}") boolean enabled,
+            @Value("${file.storage.packed.compact-below:0.5}") double compactBelow,
+            @Value("${file.storage.packed.grace-millis:600000}") long graceMillis)
+    {
+        this.fileService = fileService;
+        this.segmentStore = segmentStore;
+        this.storageVolumes = storageVolumes;
+        this.blobRepository = blobRepository;
+        this.enabled = enabled;
+        this.compactBelow = compactBelow;
+        this.graceMillis = graceMillis;
+    }
+
+    @Scheduled(fixedDelayString = "${file.storage.packed.compaction.interval-millis:300000}")
+    public void compact() {
+
+        deleteExpiredSegments();
+
+        if(!enabled)
+            return;
+
+        for(StorageVolumes.Volume volume : storageVolumes.volumes()) {
+            try {
+                for(Map.Entry<UUID, Long> segment : segmentStore.sealedSegments(volume.getName()).entrySet()) {
+                    if(!compacted.contains(segment.getKey()))
+                        compact(volume.getName(), segment.getKey(), segment.getValue());
+                }
+            } catch (IOException | RuntimeException ex) {
+                log.warn("Couldn't compact segments of volume [{}]", volume.getName(), ex);
+            }
+        }
+    }
+
+    private void compact(String volume, UUID segmentId, long segmentBytes) throws IOException {
+
+        List<BlobRecord> live = blobRepository.serveLiveInSegment(segmentId);
+        long liveBytes = live.stream().mapToLong(blob -> blob.getSegment().getLength()).sum();
+        if(!live.isEmpty() && liveBytes >= segmentBytes * compactBelow)
+            return;
+
+        Map<UUID, SegmentEntry> moved = new HashMap<>();
+        for(BlobRecord blob : live) {
+            byte[] bytes = segmentStore.read(volume, blob.getSegment());
+            moved.put(blob.getId(), segmentStore.append(volume, bytes, bytes.length));
+        }
+        if(!moved.isEmpty())
+            fileService.relocateSegmentEntries(segmentId, moved);
+
+        compacted.add(segmentId);
+        pendingDeletions.add(new PendingDeletion(System.currentTimeMillis() + graceMillis, volume, segmentId));
+
+        log.info("Compacted segment [{}] on volume [{}], {} of {} bytes were live", segmentId, volume, liveBytes, segmentBytes);
+    }
+
+    private void deleteExpiredSegments() {
+        long now = System.currentTimeMillis();
+        while(!pendingDeletions.isEmpty() && pendingDeletions.peek().deleteAt <= now) {
+            PendingDeletion deletion = pendingDeletions.poll();
+            try {
+                segmentStore.delete(deletion.volume, deletion.segmentId);
+                compacted.remove(deletion.segmentId);
+            } catch (IOException ex) {
+                log.warn("Couldn't delete segment [{}]", deletion.segmentId, ex);
+            }
+        }
+    }
+
+    @AllArgsConstructor
+    private static class PendingDeletion {
+        private final long deleteAt;
+        private final String volume;
+        private final UUID segmentId;
+    }
+
+}
@@ -0,0 +1,78 @@
+package edu.myrza.todoapp.service;
+
+/*
+*  Subtree scoped locking of the folder tree, so that mutations of disjoint subtrees run concurrently and
+*  overlapping ones serialize.
+*
+*  Moving and deleting read a subtree (and its ancestors) and then rewrite closure table edges from what they've
+*  read. An operation locks the roots it moves/deletes exclusively, the folders it inserts into (or copies from)
+*  shared, and every ancestor of all of them shared. Two operations then conflict only if one of them changes a
+*  subtree the other one touches: whatever the other one touches lies inside it, so the other one locks its root
+*  either directly or as an ancestor. Moving A into B and B into A at the same time can't create a cycle anymore.
+*
+*  Locks are postgres transaction scoped advisory locks (keyed by a hash of the file id, a collision only makes
+*  two unrelated operations wait for each other), so they hold across instances and go away on commit/rollback.
+*  They are taken in key order in a single statement, so two operations never wait for each other in a cycle.
+*  Ancestors are read before they are locked: if a concurrent move changed them in between, the new ones are
+*  locked on top. That rare second round isn't ordered with the first one, a deadlock there is detected by
+*  postgres and fails one of the transactions.
+* */
+
+import edu.myrza.todoapp.model.entity.User;
+import edu.myrza.todoapp.repos.EdgeRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+@Service
+public class SubtreeLocks {
+
+    private final EdgeRepository edgeRepository;
+
+    @Autowired
+    public SubtreeLocks(EdgeRepository edgeRepository) {
+        this.edgeRepository = edgeRepository;
+    }
+
+    // 'roots' - subtrees the caller moves or deletes, 'folders' - folders it inserts into or reads from.
+    // Locks are held until the surrounding transaction ends.
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void lock(User owner, Collection<UUID> roots, Collection<UUID> folders) {
+
+        Set<Long> exclusive = roots.stream().map(SubtreeLocks::key).collect(Collectors.toSet());
+        Set<UUID> touched = new HashSet<>(roots);
+        touched.addAll(folders);
+        if(touched.isEmpty())
+            return;
+
+        Set<Long> held = new HashSet<>();
+        Set<Long> wanted = keys(touched);
+        wanted.addAll(keys(edgeRepository.serveAncestorIds(owner, touched)));
+        while(!held.containsAll(wanted)) {
+            List<Long> keys = wanted.stream().filter(key -> !held.contains(key)).sorted().collect(Collectors.toList());
+            // 'exclusiveKeys' is never empty in the statement, postgres can't type an empty array
+            List<Long> exclusiveKeys = keys.stream().filter(exclusive::contains).collect(Collectors.toList());
+            if(exclusiveKeys.isEmpty())
+                exclusiveKeys = Collections.singletonList(Long.MIN_VALUE);
+
+            edgeRepository.lockAdvisory(keys, exclusiveKeys);
+            held.addAll(keys);
+
+            // ancestors are stable once all of them are locked
+            wanted.addAll(keys(edgeRepository.serveAncestorIds(owner, touched)));
+        }
+    }
+
+    static long key(UUID id) {
+        return id.getMostSignificantBits() ^ id.getLeastSignificantBits();
+    }
+
+    private static Set<Long> keys(Collection<UUID> ids) {
+        return ids.stream().map(SubtreeLocks::key).collect(Collectors.toSet());
+    }
+
+}
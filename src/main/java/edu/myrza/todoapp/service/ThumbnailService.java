@@ -0,0 +1,214 @@
+package edu.myrza.todoapp.service;
+
+/*
+*  Generates and serves small jpeg renditions of uploaded images.
+*
+*  Thumbnails of new uploads are generated by a small worker pool after the upload transaction commits.
+*  The pool has a bounded queue, if it is full the task is dropped, so uploads are never slowed down.
+*  Files without a thumbnail (old files, dropped tasks) get it generated lazily on the first request.
+*  Dimensions are read from the image header first, images over 'file.thumbnail.max-pixels' are never decoded
+*  (a small png can claim to be gigapixels large) and get no thumbnail.
+* */
+
+import edu.myrza.todoapp.event.FilesUploadedEvent;
+import edu.myrza.todoapp.exceptions.SystemException;
+import edu.myrza.todoapp.model.entity.FileRecord;
+import edu.myrza.todoapp.model.entity.Status;
+import edu.myrza.todoapp.model.entity.User;
+import edu.myrza.todoapp.model.enums.FileType;
+import edu.myrza.todoapp.model.enums.StorageEncoding;
+import edu.myrza.todoapp.repos.FileRepository;
+import edu.myrza.todoapp.util.BlobLocation;
+import edu.myrza.todoapp.util.FileSystemUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import javax.annotation.PreDestroy;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.*;
+
+@Service
+public class ThumbnailService {
+
+    private static final Logger log = LoggerFactory.getLogger(ThumbnailService.class);
+
+    private static final Set<String> IMAGE_EXTENSIONS = new HashSet<>(Arrays.asList(".png", ".jpg", ".jpeg", ".gif", ".bmp"));
+
+    private final FileSystemUtil fileSystemUtil;
+    private final FileRepository fileRepository;
+    private final FileService fileService;
+    private final int thumbnailSize;
+    private final long maxPixels;
+    private final ThreadPoolExecutor workers;
+
+    // blobs whose thumbnails are being generated right now, so concurrent requests for the same file don't do the work twice
+    private final ConcurrentMap<UUID, CompletableFuture<Path>> inFlight = new ConcurrentHashMap<>();
+
+    @Autowired
+    public ThumbnailService(
+            FileSystemUtil fileSystemUtil,
+            FileRepository fileRepository,
+            FileService fileService,
+            @Value("${file.thumbnail.size:200}") int thumbnailSize,
+            @Value("${file.thumbnail.max-pixels:40000000}") long maxPixels,
+            @Value("${file.thumbnail.workers:2}") int workerCount,
+            @Value("${file.thumbnail.queue-capacity:1000}") int queueCapacity)
+    {
+        this.fileSystemUtil = fileSystemUtil;
+        this.fileRepository = fileRepository;
+        this.fileService = fileService;
+        this.thumbnailSize = thumbnailSize;
+        this.maxPixels = maxPixels;
+        this.workers = new ThreadPoolExecutor(
+                workerCount, workerCount,
+                0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                new ThreadPoolExecutor.DiscardPolicy());
+    }
+
+    @TransactionalEventListener
+    public void onFilesUploaded(FilesUploadedEvent event) {
+        String username = event.getOwner().getUsername();
+        for(FileRecord file : event.getFiles()) {
+            if(isImage(file))
+                workers.execute(() -> generateQuietly(new BlobLocation(username, file.getVolume(), file.getBlobId(), file.getSegment())));
+        }
+    }
+
+    public Optional<Resource> serveThumbnail(User user, UUID fileId) {
+
+        FileRecord fileRecord = fileRepository.findByIdAndOwner(fileId, user).orElseThrow(() -> new RuntimeException("File [" + fileId + "] not found"));
+
+        if(fileRecord.getStatus().getCode().equals(Status.Code.DELETED) || !isImage(fileRecord))
+            return Optional.empty();
+
+        // thumbnails belong to blobs, so copies of a file share them
+        BlobLocation blob = fileService.locateBlob(user, fileRecord);
+        Path thumbnail = fileSystemUtil.thumbnailPath(blob);
+        if(!Files.exists(thumbnail))
+            thumbnail = generate(blob);
+
+        return Optional.ofNullable(thumbnail).map(FileSystemResource::new);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workers.shutdownNow();
+    }
+
+    // Returns null if the original couldn't be decoded as an image
+    private Path generate(BlobLocation blob) {
+
+        UUID blobId = blob.getBlobId();
+        CompletableFuture<Path> ownFuture = new CompletableFuture<>();
+        CompletableFuture<Path> future = inFlight.putIfAbsent(blobId, ownFuture);
+        if(future != null)
+            return future.join();
+
+        try {
+            Path thumbnail = render(blob);
+            ownFuture.complete(thumbnail);
+            return thumbnail;
+        } catch (IOException ex) {
+            ownFuture.completeExceptionally(ex);
+            throw new SystemException(ex, "Error generating a thumbnail for blob [" + blobId + "]");
+        } finally {
+            inFlight.remove(blobId, ownFuture);
+        }
+    }
+
+    private void generateQuietly(BlobLocation blob) {
+        try {
+            generate(blob);
+        } catch (RuntimeException ex) {
+            log.warn("Couldn't generate a thumbnail for blob [{}]", blob.getBlobId(), ex);
+        }
+    }
+
+    private Path render(BlobLocation blob) throws IOException {
+
+        Path thumbnail = fileSystemUtil.thumbnailPath(blob);
+        if(Files.exists(thumbnail))
+            return thumbnail;
+
+        BufferedImage image;
+        if(blob.isPacked()) {
+            try(InputStream in = fileSystemUtil.openFile(blob, StorageEncoding.IDENTITY)) {
+                image = readImage(in);
+            }
+        } else {
+            image = readImage(fileSystemUtil.serveFile(blob, null));
+        }
+        if(image == null)
+            return null;
+
+        double scale = Math.min(1.0, (double) thumbnailSize / Math.max(image.getWidth(), image.getHeight()));
+        int width = Math.max(1, (int) Math.round(image.getWidth() * scale));
+        int height = Math.max(1, (int) Math.round(image.getHeight() * scale));
+
+        BufferedImage scaled = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = scaled.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setColor(Color.WHITE);
+            g.fillRect(0, 0, width, height);
+            g.drawImage(image, 0, 0, width, height, null);
+        } finally {
+            g.dispose();
+        }
+
+        // write into a temp file first, so readers never see a half written thumbnail
+        Files.createDirectories(thumbnail.getParent());
+        Path tmp = Files.createTempFile(thumbnail.getParent(), blob.getBlobId().toString(), ".tmp");
+        try {
+            ImageIO.write(scaled, "jpg", tmp.toFile());
+            Files.move(tmp, thumbnail, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+
+        return thumbnail;
+    }
+
+    // Null if 'source' (a File or an InputStream) isn't an image ImageIO can read, or it is too big to be decoded
+    BufferedImage readImage(Object source) throws IOException {
+        try(ImageInputStream in = ImageIO.createImageInputStream(source)) {
+            Iterator<ImageReader> readers = in == null ? Collections.emptyIterator() : ImageIO.getImageReaders(in);
+            if(!readers.hasNext())
+                return null;
+
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                if((long) reader.getWidth(0) * reader.getHeight(0) > maxPixels)
+                    return null;
+                return reader.read(0);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private boolean isImage(FileRecord file) {
+        return file.getFileType() == FileType.FILE
+                && file.getExtension() != null
+                && IMAGE_EXTENSIONS.contains(file.getExtension().toLowerCase());
+    }
+
+}
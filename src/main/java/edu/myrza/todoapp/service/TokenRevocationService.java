@@ -0,0 +1,132 @@
+package edu.myrza.todoapp.service;
+
+/*
+*  Revoked (logged out) tokens that haven't expired yet.
+*
+*  Every authenticated request asks whether its token is revoked, so the question is answered by an in-memory
+*  bloom filter first: almost every request gets "definitely not revoked" without any I/O, only possible hits
+*  are confirmed against the 'revoked_token' table.
+*
+*  Revocations made by other instances are pulled into the filter every 'auth.revocation.refresh-millis'.
+*  Bloom filters can't forget, so expired rows are purged and the filter is rebuilt from scratch
+*  every 'auth.revocation.rebuild-millis'.
+* */
+
+import edu.myrza.todoapp.exceptions.SystemException;
+import edu.myrza.todoapp.repos.RevokedTokenRepository;
+import edu.myrza.todoapp.util.BloomFilter;
+import edu.myrza.todoapp.util.JwtUtil;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+@Service
+public class TokenRevocationService {
+
+    private static final LocalDateTime BEGINNING = LocalDateTime.of(1970, 1, 1, 0, 0);
+
+    private final RevokedTokenRepository revokedTokenRepository;
+    private final JwtUtil jwtUtil;
+    private final long minCapacity;
+    private final double falsePositiveRate;
+    private final long clockSkewSeconds;
+
+    private volatile BloomFilter filter;
+    // revocations made after this moment (minus clock skew) haven't been pulled into the filter yet
+    private LocalDateTime pulledUntil;
+
+    @Autowired
+    public TokenRevocationService(
+            RevokedTokenRepository revokedTokenRepository,
+            JwtUtil jwtUtil,
+            @Value("${auth.revocation.min-capacity:100000}") long minCapacity,
+            @Value("${auth.revocation.false-positive-rate:0.001}") double falsePositiveRate,
+            @Value("${auth.revocation.clock-skew-seconds:30}") long clockSkewSeconds)
+    {
+        this.revokedTokenRepository = revokedTokenRepository;
+        this.jwtUtil = jwtUtil;
+        this.minCapacity = minCapacity;
+        this.falsePositiveRate = falsePositiveRate;
+        this.clockSkewSeconds = clockSkewSeconds;
+    }
+
+    // The token must be valid (signature and expiry are checked by the caller)
+    public void revoke(String token) {
+        byte[] hash = sha256(token);
+        LocalDateTime expiresAt = LocalDateTime.ofInstant(jwtUtil.extractExpiration(token).toInstant(), ZoneId.systemDefault());
+
+        // the row is committed before the filter knows about it, so a concurrent rebuild can't lose it
+        revokedTokenRepository.revoke(toHex(hash), expiresAt, LocalDateTime.now());
+        filter.put(hash);
+    }
+
+    public boolean isRevoked(String token) {
+        byte[] hash = sha256(token);
+        if(!filter.mightContain(hash))
+            return false;
+
+        return revokedTokenRepository.existsById(toHex(hash));
+    }
+
+    @PostConstruct
+    @Scheduled(initialDelayString = "${auth.revocation.rebuild-millis:3600000}", fixedDelayString = "${auth.revocation.rebuild-millis:3600000}")
+    public synchronized void rebuild() {
+        LocalDateTime now = LocalDateTime.now();
+        revokedTokenRepository.deleteExpired(now);
+
+        // twice the current size, so the false positive rate holds until the next rebuild
+        long capacity = Math.max(minCapacity, 2 * revokedTokenRepository.countUnexpired(now));
+        BloomFilter rebuilt = new BloomFilter(capacity, falsePositiveRate);
+        for(String tokenHash : revokedTokenRepository.serveRevokedSince(BEGINNING, now))
+            rebuilt.put(fromHex(tokenHash));
+
+        filter = rebuilt;
+        pulledUntil = now;
+        // revocations committed while the filter was being built
+        pull(LocalDateTime.now());
+    }
+
+    @Scheduled(fixedDelayString = "${auth.revocation.refresh-millis:5000}")
+    public synchronized void refresh() {
+        pull(LocalDateTime.now());
+    }
+
+    private void pull(LocalDateTime now) {
+        BloomFilter current = filter;
+        for(String tokenHash : revokedTokenRepository.serveRevokedSince(pulledUntil.minusSeconds(clockSkewSeconds), now))
+            current.put(fromHex(tokenHash));
+
+        pulledUntil = now;
+    }
+
+    private static byte[] sha256(String token) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException ex) {
+            throw new SystemException(ex, "SHA-256 is not supported");
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for(byte b : bytes)
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        return hex.toString();
+    }
+
+    private static byte[] fromHex(String hex) {
+        byte[] bytes = new byte[hex.length() / 2];
+        for(int i = 0; i < bytes.length; i++)
+            bytes[i] = (byte) Integer.parseInt(hex.substring(2 * i, 2 * i + 2), 16);
+        return bytes;
+    }
+
+}
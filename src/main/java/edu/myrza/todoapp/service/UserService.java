@@ -17,6 +17,7 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.Collections;
+import java.util.Optional;
 
 @Service
 public class UserService implements UserDetailsService {
@@ -48,6 +49,10 @@ public class UserService implements UserDetailsService {
         return userRepo.findByUsername(s).orElseThrow(() -> new UsernameNotFoundException(s));
     }
 
+    public Optional<User> findUser(String username) {
+        return userRepo.findByUsername(username);
+    }
+
     public User createUser(String username, String password, String email) {
         User user = new User();
 
@@ -0,0 +1,166 @@
+package edu.myrza.todoapp.service;
+
+/*
+*  Moves blobs from the fullest storage volume to the emptiest one, so a newly added disk doesn't stay idle
+*  until old data is deleted (opt-in, file.storage.rebalance.enabled=true).
+*
+*  A blob is copied first (through a temp file, moved into place atomically), then the db is switched to the new
+*  volume. Readers that resolved the old location just before the switch keep reading the old copy, that's why old
+*  copies are deleted only after 'file.storage.rebalance.grace-millis'. Pending deletions live in this JVM only,
+*  a restart leaves orphaned copies on the old volume behind.
+* */
+
+import edu.myrza.todoapp.repos.BlobRepository;
+import edu.myrza.todoapp.util.BlobLocation;
+import edu.myrza.todoapp.util.FileSystemUtil;
+import edu.myrza.todoapp.util.StorageVolumes;
+import edu.myrza.todoapp.util.StorageVolumes.Volume;
+import lombok.AllArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+
+@Service
+public class VolumeRebalancer {
+
+    private static final Logger log = LoggerFactory.getLogger(VolumeRebalancer.class);
+
+    private static final UUID MIN_UUID = new UUID(0, 0);
+
+    private final FileService fileService;
+    private final FileSystemUtil fileSystemUtil;
+    private final StorageVolumes storageVolumes;
+    private final BlobRepository blobRepository;
+    private final boolean enabled;
+    private final double maxSpread;
+    private final int batchSize;
+    private final long graceMillis;
+
+    private final Queue<PendingDeletion> pendingDeletions = new ConcurrentLinkedQueue<>();
+
+    @Autowired
+    public VolumeRebalancer(
+            FileService fileService,
+            FileSystemUtil fileSystemUtil,
+            StorageVolumes storageVolumes,
+            BlobRepository blobRepository,
+            @Value("${file.storage.rebalance.enabled:false}") boolean enabled,
+            @Value("${file.storage.rebalance.max-spread:0.1}") double maxSpread,
+            @Value("${file.storage.rebalance.batch-size:500}") int batchSize,
+            @Value("${file.storage.rebalance.grace-millis:600000}") long graceMillis)
+    {
+        this.fileService = fileService;
+        this.fileSystemUtil = fileSystemUtil;
+        this.storageVolumes = storageVolumes;
+        this.blobRepository = blobRepository;
+        this.enabled = enabled;
+        this.maxSpread = maxSpread;
+        this.batchSize = batchSize;
+        this.graceMillis = graceMillis;
+    }
+
+    // One batch per run, volume usage is re-evaluated before the next one
+    @Scheduled(fixedDelayString = "${file.storage.rebalance.interval-millis:60000}")
+    public void rebalance() {
+
+        deleteExpiredCopies();
+
+        if(!enabled || storageVolumes.volumes().size() < 2)
+            return;
+
+        Volume fullest = storageVolumes.volumes().stream().max(Comparator.comparingDouble(Volume::usedFraction)).get();
+        Volume emptiest = storageVolumes.volumes().stream().min(Comparator.comparingDouble(Volume::usedFraction)).get();
+        if(fullest.usedFraction() - emptiest.usedFraction() <= maxSpread)
+            return;
+
+        // random starting point, so blobs that keep failing to move don't block the rest
+        UUID after = new UUID(ThreadLocalRandom.current().nextLong(), 0);
+        List<Object[]> batch = blobRepository.serveLiveOnVolume(fullest.getName(), after, PageRequest.of(0, batchSize));
+        if(batch.isEmpty())
+            batch = blobRepository.serveLiveOnVolume(fullest.getName(), MIN_UUID, PageRequest.of(0, batchSize));
+
+        int moved = 0;
+        for(Object[] row : batch) {
+            BlobLocation from = new BlobLocation((String) row[1], fullest.getName(), (UUID) row[0]);
+            BlobLocation to = new BlobLocation(from.getUsername(), emptiest.getName(), from.getBlobId());
+            if(move(from, to))
+                moved++;
+        }
+
+        if(moved > 0)
+            log.info("Moved {} blobs from volume [{}] to [{}]", moved, fullest.getName(), emptiest.getName());
+    }
+
+    private boolean move(BlobLocation from, BlobLocation to) {
+
+        List<Path> copies = new ArrayList<>();
+        try {
+            copies.add(copy(fileSystemUtil.blobPath(from), fileSystemUtil.blobPath(to)));
+
+            Path thumbnail = fileSystemUtil.thumbnailPath(from);
+            if(Files.exists(thumbnail))
+                copies.add(copy(thumbnail, fileSystemUtil.thumbnailPath(to)));
+
+            if(!fileService.relocateBlob(from.getBlobId(), from.getVolume(), to.getVolume())) {
+                deleteQuietly(copies);
+                return false;
+            }
+        } catch (IOException | RuntimeException ex) {
+            log.warn("Couldn't move blob [{}] to volume [{}]", from.getBlobId(), to.getVolume(), ex);
+            deleteQuietly(copies);
+            return false;
+        }
+
+        List<Path> originals = new ArrayList<>();
+        originals.add(fileSystemUtil.blobPath(from));
+        originals.add(fileSystemUtil.thumbnailPath(from));
+        pendingDeletions.add(new PendingDeletion(System.currentTimeMillis() + graceMillis, originals));
+
+        return true;
+    }
+
+    private Path copy(Path src, Path dest) throws IOException {
+        Files.createDirectories(dest.getParent());
+        Path tmp = Files.createTempFile(dest.getParent(), dest.getFileName().toString(), ".tmp");
+        try {
+            Files.copy(src, tmp, StandardCopyOption.REPLACE_EXISTING);
+            return Files.move(tmp, dest, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException ex) {
+            Files.deleteIfExists(tmp);
+            throw ex;
+        }
+    }
+
+    private void deleteExpiredCopies() {
+        long now = System.currentTimeMillis();
+        while(!pendingDeletions.isEmpty() && pendingDeletions.peek().deleteAt <= now)
+            deleteQuietly(pendingDeletions.poll().paths);
+    }
+
+    private void deleteQuietly(List<Path> paths) {
+        for(Path path : paths) {
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException ex) {
+                log.warn("Couldn't delete [{}]", path, ex);
+            }
+        }
+    }
+
+    @AllArgsConstructor
+    private static class PendingDeletion {
+        private final long deleteAt;
+        private final List<Path> paths;
+    }
+
+}
@@ -0,0 +1,18 @@
+package edu.myrza.todoapp.util;
+
+// Receives progress of an archive build (bytes are counted before compression)
+public interface ArchiveProgress {
+
+    ArchiveProgress NONE = new ArchiveProgress() {
+        @Override
+        public void onBytes(long bytes) {}
+
+        @Override
+        public void onEntry() {}
+    };
+
+    void onBytes(long bytes);
+
+    void onEntry();
+
+}
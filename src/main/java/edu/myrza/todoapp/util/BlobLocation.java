@@ -0,0 +1,34 @@
+package edu.myrza.todoapp.util;
+
+/*
+*  Where the bytes of a blob are stored: <volume root>/<username>/<blobId>,
+*  or an entry of a segment file for small blobs packed by SegmentStore.
+* */
+
+import edu.myrza.todoapp.model.entity.SegmentEntry;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.UUID;
+
+@Getter
+@AllArgsConstructor
+public class BlobLocation {
+
+    private final String username;
+    private final String volume;
+    private final UUID blobId;
+    // set by FileSystemUtil when a new blob gets packed
+    @Setter
+    private SegmentEntry segment;
+
+    public BlobLocation(String username, String volume, UUID blobId) {
+        this(username, volume, blobId, null);
+    }
+
+    public boolean isPacked() {
+        return segment != null;
+    }
+
+}
@@ -0,0 +1,63 @@
+package edu.myrza.todoapp.util;
+
+/*
+*  Bloom filter over byte[] keys (keys are expected to be hashes already, e.g. sha-256 digests).
+*
+*  'mightContain' never returns false for a key that was put, and returns true for a key that wasn't put with
+*  probability of about 'falsePositiveRate' (as long as no more than 'expectedInsertions' keys are put).
+*  Keys can't be removed, the filter must be rebuilt instead. Safe for concurrent use.
+* */
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+public class BloomFilter {
+
+    private final AtomicLongArray bits;
+    private final long bitCount;
+    private final int hashCount;
+
+    public BloomFilter(long expectedInsertions, double falsePositiveRate) {
+        long n = Math.max(expectedInsertions, 1);
+        long m = (long) Math.ceil(-n * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+
+        this.bits = new AtomicLongArray((int) Math.min((m + 63) / 64, Integer.MAX_VALUE));
+        this.bitCount = bits.length() * 64L;
+        this.hashCount = Math.max(1, (int) Math.round((double) bitCount / n * Math.log(2)));
+    }
+
+    public void put(byte[] key) {
+        long h1 = longAt(key, 0);
+        long h2 = longAt(key, 8);
+        for(int i = 0; i < hashCount; i++) {
+            long bit = index(h1 + i * h2);
+            long mask = 1L << bit;
+            int word = (int) (bit >>> 6);
+            long current;
+            while(((current = bits.get(word)) & mask) == 0 && !bits.compareAndSet(word, current, current | mask));
+        }
+    }
+
+    public boolean mightContain(byte[] key) {
+        long h1 = longAt(key, 0);
+        long h2 = longAt(key, 8);
+        for(int i = 0; i < hashCount; i++) {
+            long bit = index(h1 + i * h2);
+            if((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0)
+                return false;
+        }
+        return true;
+    }
+
+    // double hashing (Kirsch-Mitzenmacher): the i-th index is h1 + i * h2
+    private long index(long hash) {
+        return (hash & Long.MAX_VALUE) % bitCount;
+    }
+
+    private static long longAt(byte[] key, int offset) {
+        long value = 0;
+        for(int i = 0; i < 8; i++)
+            value = (value << 8) | (key[(offset + i) % key.length] & 0xFF);
+        return value;
+    }
+
+}
@@ -0,0 +1,113 @@
+package edu.myrza.todoapp.util;
+
+/*
+*  ZipInputStream that refuses to extract zip bombs.
+*
+*  The declared sizes of entries can't be trusted (and are often missing), so limits are enforced on the bytes
+*  actually inflated: total number of entries, total number of extracted bytes, and the ratio between extracted
+*  bytes and compressed bytes read from the archive so far. Breaking a limit throws BussinesException(ARCHIVE_001).
+* */
+
+import edu.myrza.todoapp.exceptions.BussinesException;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipInputStream;
+
+public class BoundedZipInputStream extends ZipInputStream {
+
+    // the ratio isn't checked until this much is extracted, small archives of zeros are harmless
+    private static final long RATIO_CHECK_THRESHOLD = 1024 * 1024;
+
+    private final CountingInputStream compressed;
+    private final int maxEntries;
+    private final long maxBytes;
+    private final long maxRatio;
+
+    private int entries;
+    private long extractedBytes;
+
+    public BoundedZipInputStream(InputStream in, int maxEntries, long maxBytes, long maxRatio) {
+        this(new CountingInputStream(in), maxEntries, maxBytes, maxRatio);
+    }
+
+    private BoundedZipInputStream(CountingInputStream compressed, int maxEntries, long maxBytes, long maxRatio) {
+        super(compressed);
+        this.compressed = compressed;
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+        this.maxRatio = maxRatio;
+    }
+
+    @Override
+    public ZipEntry getNextEntry() throws IOException {
+        try {
+            ZipEntry entry = super.getNextEntry();
+            if(entry != null && ++entries > maxEntries)
+                throw new BussinesException(BussinesException.Code.ARCHIVE_001);
+            return entry;
+        } catch (ZipException ex) {
+            throw new BussinesException(BussinesException.Code.ARCHIVE_001);
+        }
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int bytesRead;
+        try {
+            bytesRead = super.read(b, off, len);
+        } catch (ZipException ex) {
+            throw new BussinesException(BussinesException.Code.ARCHIVE_001);
+        }
+
+        if(bytesRead > 0) {
+            extractedBytes += bytesRead;
+            if(extractedBytes > maxBytes)
+                throw new BussinesException(BussinesException.Code.ARCHIVE_001);
+            if(extractedBytes > RATIO_CHECK_THRESHOLD && extractedBytes > maxRatio * Math.max(compressed.count, 1))
+                throw new BussinesException(BussinesException.Code.ARCHIVE_001);
+        }
+
+        return bytesRead;
+    }
+
+    public long getExtractedBytes() {
+        return extractedBytes;
+    }
+
+    private static class CountingInputStream extends FilterInputStream {
+
+        private long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if(b >= 0)
+                count++;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int bytesRead = super.read(b, off, len);
+            if(bytesRead > 0)
+                count += bytesRead;
+            return bytesRead;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+    }
+
+}
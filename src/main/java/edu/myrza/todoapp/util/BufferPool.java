@@ -0,0 +1,42 @@
+package edu.myrza.todoapp.util;
+
+/*
+*  Keeps up to 'maxPooled' byte buffers of the same size for reuse, so heavy operations
+*  don't allocate (and make GC collect) a multi-megabyte buffer per call.
+* */
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class BufferPool {
+
+    private final int bufferSize;
+    private final int maxPooled;
+    private final ConcurrentLinkedQueue<byte[]> buffers = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pooled = new AtomicInteger();
+
+    public BufferPool(int bufferSize, int maxPooled) {
+        this.bufferSize = bufferSize;
+        this.maxPooled = maxPooled;
+    }
+
+    public byte[] acquire() {
+        byte[] buffer = buffers.poll();
+        if(buffer == null)
+            return new byte[bufferSize];
+
+        pooled.decrementAndGet();
+        return buffer;
+    }
+
+    public void release(byte[] buffer) {
+        if(buffer.length != bufferSize)
+            return;
+
+        if(pooled.incrementAndGet() <= maxPooled)
+            buffers.offer(buffer);
+        else
+            pooled.decrementAndGet();
+    }
+
+}
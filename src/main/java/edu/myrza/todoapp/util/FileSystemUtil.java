@@ -4,35 +4,72 @@ package edu.myrza.todoapp.util;
 *  Encapsulates all the interactions with an actual file system.
 * */
 
+import edu.myrza.todoapp.model.entity.SegmentEntry;
+import edu.myrza.todoapp.model.enums.StorageEncoding;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.AbstractResource;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
 import org.springframework.stereotype.Component;
 
-import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
-import java.io.IOException;
+import javax.annotation.PostConstruct;
+
+import java.io.*;
+import java.nio.ByteBuffer;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
+import java.util.function.Function;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
 
 @Component
 public class FileSystemUtil {
 
-    @Value("${file.storage.dir}")
-    private String root;
+    // thumbnails are stored next to the original blob: <root>/<username>/<blobId>.thumb.jpg
+    private static final String THUMBNAIL_SUFFIX = ".thumb.jpg";
+
+    @Autowired
+    private StorageVolumes storageVolumes;
+
+    @Autowired
+    private SegmentStore segmentStore;
 
-    @Value("/home/user/work/tmp")
+    @Value("${file.storage.tmp.dir:/home/user/work/tmp}")
     private String tmpDir;
 
+    // archive builds are bounded by HeavyOperationScheduler, so that many buffers are enough
+    @Value("${heavy-ops.archive.max-concurrent:4}")
+    private int archiveBufferCount;
+
+    private BufferPool archiveBuffers;
+
+    @PostConstruct
+    public void init() {
+        archiveBuffers = new BufferPool(8 * 1024 * 1024, archiveBufferCount); // 8 Mb
+    }
+
     public void createUserRootFolder(String username) throws IOException {
 
-        Path path = Paths.get(root, username);
-        Files.createDirectories(path);
+        for(StorageVolumes.Volume volume : storageVolumes.volumes())
+            Files.createDirectories(volume.getRoot().resolve(username));
+    }
+
+    // Volume for a new blob
+    public String placeBlob() {
+        return storageVolumes.place();
+    }
+
+    public Path blobPath(BlobLocation blob) {
+        return storageVolumes.root(blob.getVolume()).resolve(blob.getUsername()).resolve(blob.getBlobId().toString());
     }
 
     public List<MultipartFileDecorator> saveFile(String path, List<MultipartFileDecorator> files) {
@@ -41,8 +78,23 @@ public class FileSystemUtil {
 
         for(MultipartFileDecorator file : files) {
             try {
-                Path dest = Files.createFile(Paths.get(root, path, file.getName()));
-                file.getMultipartFile().transferTo(dest);
+                file.setVolume(placeBlob());
+                if(file.getMultipartFile().getSize() <= segmentStore.maxPackedBytes()) {
+                    byte[] bytes = file.getMultipartFile().getBytes();
+                    file.setSegment(pack(file.getVolume(), bytes, bytes.length, file.getStorageEncoding()));
+                    savedFiles.add(file);
+                    continue;
+                }
+
+                Path dest = createBlobFile(new BlobLocation(path, file.getVolume(), file.getId()));
+                if(file.getStorageEncoding() == StorageEncoding.GZIP) {
+                    try(InputStream in = file.getMultipartFile().getInputStream();
+                        OutputStream out = new GZIPOutputStream(Files.newOutputStream(dest), 64 * 1024)) {
+                        copy(in, out, new byte[64 * 1024]);
+                    }
+                } else {
+                    file.getMultipartFile().transferTo(dest);
+                }
                 savedFiles.add(file);
             } catch (IOException ex) {
                 ex.printStackTrace();
@@ -52,9 +104,73 @@ public class FileSystemUtil {
         return savedFiles;
     }
 
-    public File serveFile(String path, String fileId, String extenstion) {
+    // Writes everything 'in' returns into a new blob, 'in' is not closed. Returns the number of original bytes written.
+    // Small blobs are packed into a segment, the entry is set on 'blob' then.
+    public long saveStream(BlobLocation blob, InputStream in, StorageEncoding storageEncoding) throws IOException {
+
+        byte[] head = new byte[segmentStore.maxPackedBytes() + 1];
+        int headLength = readFully(in, head);
+        if(headLength < head.length) {
+            blob.setSegment(pack(blob.getVolume(), head, headLength, storageEncoding));
+            return headLength;
+        }
+
+        try(OutputStream out = createBlob(blob, storageEncoding)) {
+            out.write(head, 0, headLength);
+            byte[] buffer = new byte[64 * 1024];
+            long written = headLength;
+            int bytesRead;
+            while((bytesRead = in.read(buffer)) >= 0) {
+                out.write(buffer, 0, bytesRead);
+                written += bytesRead;
+            }
+            return written;
+        }
+    }
+
+    // Creates a new blob, bytes written to the stream are encoded with 'storageEncoding'
+    public OutputStream createBlob(BlobLocation blob, StorageEncoding storageEncoding) throws IOException {
+        OutputStream file = Files.newOutputStream(createBlobFile(blob));
+        if(storageEncoding == StorageEncoding.GZIP)
+            return new GZIPOutputStream(file, 64 * 1024);
 
-        Path src = Paths.get(root, path, fileId);
+        return new BufferedOutputStream(file, 64 * 1024);
+    }
+
+    // Original bytes of a blob in a file that can be read at random offsets. Blobs stored as is are returned
+    // directly, compressed ones are decoded into a temporary file (which the caller must delete).
+    public Path decodedBlobPath(BlobLocation blob, StorageEncoding storageEncoding) throws IOException {
+        if(storageEncoding == StorageEncoding.IDENTITY && !blob.isPacked())
+            return serveFile(blob, null).toPath();
+
+        Path decoded = tmpPath(UUID.randomUUID().toString());
+        try(InputStream in = openFile(blob, storageEncoding);
+            OutputStream out = Files.newOutputStream(decoded)) {
+            copy(in, out, new byte[64 * 1024]);
+        } catch (IOException | RuntimeException ex) {
+            Files.deleteIfExists(decoded);
+            throw ex;
+        }
+        return decoded;
+    }
+
+    public void deleteBlobs(Collection<BlobLocation> blobs) {
+        for(BlobLocation blob : blobs) {
+            // entries of segments are reclaimed by SegmentCompactor
+            if(blob.isPacked())
+                continue;
+            try {
+                Files.deleteIfExists(blobPath(blob));
+            } catch (IOException ex) {
+                ex.printStackTrace();
+            }
+        }
+    }
+
+    // Only for blobs stored as files of their own
+    public File serveFile(BlobLocation blob, String extenstion) {
+
+        Path src = blobPath(blob);
         if(!Files.exists(src)) {
             throw new RuntimeException("File not found, throw some appropriate exception here and handle it");
         }
@@ -62,26 +178,107 @@ public class FileSystemUtil {
         return src.toFile();
     }
 
+    // Stored bytes of a blob as they are (not decoded)
+    public Resource serveStoredFile(BlobLocation blob) throws IOException {
+        if(blob.isPacked())
+            return new ByteArrayResource(segmentStore.read(blob.getVolume(), blob.getSegment()));
+
+        return new FileSystemResource(serveFile(blob, null));
+    }
+
+    // Stored bytes of a small blob, read into memory at once
+    public byte[] readStoredBytes(BlobLocation blob) throws IOException {
+        if(blob.isPacked())
+            return segmentStore.read(blob.getVolume(), blob.getSegment());
+
+        return Files.readAllBytes(serveFile(blob, null).toPath());
+    }
+
+    // Opens a stored file and decodes it, i.e. the stream always returns the original bytes
+    public InputStream openFile(BlobLocation blob, StorageEncoding storageEncoding) throws IOException {
+        InputStream in = blob.isPacked()
+                ? new ByteArrayInputStream(segmentStore.read(blob.getVolume(), blob.getSegment()))
+                : new FileInputStream(serveFile(blob, null));
+        return decode(in, storageEncoding);
+    }
+
+    // Original bytes of stored bytes that are already in memory (see HotFileCache)
+    public Resource serveDecodedBytes(ByteBuffer stored, StorageEncoding storageEncoding) {
+        Resource raw = new ByteBufferResource(stored);
+        return new AbstractResource() {
+            @Override
+            public String getDescription() {
+                return "decoded " + raw.getDescription();
+            }
+
+            @Override
+            public InputStream getInputStream() throws IOException {
+                return decode(raw.getInputStream(), storageEncoding);
+            }
+        };
+    }
+
+    // The file is opened only when the resource is actually read (e.g. not for '304 Not Modified' responses)
+    public Resource serveDecodedFile(BlobLocation blob, StorageEncoding storageEncoding) {
+        String description;
+        if(blob.isPacked())
+            description = "decoded entry of segment [" + blob.getSegment().getSegmentId() + "]";
+        else
+            description = "decoded file [" + serveFile(blob, null) + "]"; // a missing file fails the request right here
+
+        return new AbstractResource() {
+            @Override
+            public String getDescription() {
+                return description;
+            }
+
+            @Override
+            public InputStream getInputStream() throws IOException {
+                return openFile(blob, storageEncoding);
+            }
+        };
+    }
+
+    public Path thumbnailPath(BlobLocation blob) {
+        Path blobPath = blobPath(blob);
+        return blobPath.resolveSibling(blobPath.getFileName() + THUMBNAIL_SUFFIX);
+    }
+
     public File compressAndReturnFiles(String username, List<TreeNode> nodes) throws IOException {
 
-        byte[] buffer = new byte[8 * 1024 * 1024]; // 8 Mb
         String zipFileName = UUID.randomUUID().toString() + ".zip";
-        ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(Paths.get(tmpDir, zipFileName).toString()));
+        Path target = tmpPath(zipFileName);
+
+        compressFiles(nodes, target, node -> new BlobLocation(username, node.getVolume(), node.getBlobId(), node.getSegment()), ArchiveProgress.NONE);
+
+        return target.toFile();
+    }
 
-        compressAndReturnFilesRec(username, "", nodes, zos, buffer);
+    // Builds a .zip of 'nodes' at 'target', 'locate' is asked where the bytes of each file are right before they are read.
+    // Can be stopped by interrupting the calling thread.
+    public void compressFiles(List<TreeNode> nodes, Path target, Function<FileTreeNode, BlobLocation> locate, ArchiveProgress progress) throws IOException {
 
-        zos.close();
+        byte[] buffer = archiveBuffers.acquire();
 
-        return Paths.get(tmpDir, zipFileName).toFile();
+        try(ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(target.toString()))) {
+            compressAndReturnFilesRec("", nodes, locate, zos, buffer, progress);
+        } finally {
+            archiveBuffers.release(buffer);
+        }
+    }
+
+    public Path tmpPath(String fileName) {
+        return Paths.get(tmpDir, fileName);
     }
 
-    private void compressAndReturnFilesRec(String username, String path, List<TreeNode> nodes, ZipOutputStream zos, byte[] buffer) throws IOException {
+    private void compressAndReturnFilesRec(String path, List<TreeNode> nodes, Function<FileTreeNode, BlobLocation> locate, ZipOutputStream zos, byte[] buffer, ArchiveProgress progress) throws IOException {
 
         // If folder is empty and it isn't a "root" folder, then we create an empty folder
         if(nodes.isEmpty() && !path.isEmpty()) {
             ZipEntry zipEntry = new ZipEntry(path);
             zos.putNextEntry(zipEntry);
             zos.closeEntry();
+            progress.onEntry();
             return;
         }
 
@@ -89,23 +286,68 @@ public class FileSystemUtil {
             if(node.getType().equals(TreeNode.Type.FILE)) {
 
                 FileTreeNode fileTreeNode = (FileTreeNode) node;
-                FileInputStream fis = new FileInputStream(Paths.get(root, username, fileTreeNode.getId()).toString());
-
                 ZipEntry zipEntry = new ZipEntry(path + fileTreeNode.getName());
                 zos.putNextEntry(zipEntry);
 
-                int bytesRead;
-                while((bytesRead = fis.read(buffer)) >= 0)
-                    zos.write(buffer, 0, bytesRead);
+                try(InputStream fis = openFile(locate.apply(fileTreeNode), fileTreeNode.getStorageEncoding())) {
+                    int bytesRead;
+                    while((bytesRead = fis.read(buffer)) >= 0) {
+                        if(Thread.currentThread().isInterrupted())
+                            throw new InterruptedIOException("Archive build has been interrupted");
+
+                        zos.write(buffer, 0, bytesRead);
+                        progress.onBytes(bytesRead);
+                    }
+                }
 
                 zos.closeEntry();
-                fis.close();
+                progress.onEntry();
 
             } else {
                 FolderTreeNode folderTreeNode = (FolderTreeNode) node;
-                compressAndReturnFilesRec(username,path + folderTreeNode.getName() + "/", folderTreeNode.getSubnodes(), zos, buffer);
+                compressAndReturnFilesRec(path + folderTreeNode.getName() + "/", folderTreeNode.getSubnodes(), locate, zos, buffer, progress);
             }
         }
     }
 
+    // the user's directory may be missing on a volume that has been added later
+    private Path createBlobFile(BlobLocation blob) throws IOException {
+        Path path = blobPath(blob);
+        Files.createDirectories(path.getParent());
+        return Files.createFile(path);
+    }
+
+    private SegmentEntry pack(String volume, byte[] bytes, int length, StorageEncoding storageEncoding) throws IOException {
+        if(storageEncoding != StorageEncoding.GZIP)
+            return segmentStore.append(volume, bytes, length);
+
+        ByteArrayOutputStream encoded = new ByteArrayOutputStream(length);
+        try(OutputStream out = new GZIPOutputStream(encoded)) {
+            out.write(bytes, 0, length);
+        }
+        return segmentStore.append(volume, encoded.toByteArray(), encoded.size());
+    }
+
+    private InputStream decode(InputStream in, StorageEncoding storageEncoding) throws IOException {
+        if(storageEncoding == StorageEncoding.GZIP)
+            return new GZIPInputStream(in, 64 * 1024);
+
+        return in;
+    }
+
+    // Reads until 'buffer' is full or the stream ends
+    private int readFully(InputStream in, byte[] buffer) throws IOException {
+        int length = 0;
+        int bytesRead;
+        while(length < buffer.length && (bytesRead = in.read(buffer, length, buffer.length - length)) >= 0)
+            length += bytesRead;
+        return length;
+    }
+
+    private void copy(InputStream in, OutputStream out, byte[] buffer) throws IOException {
+        int bytesRead;
+        while((bytesRead = in.read(buffer)) >= 0)
+            out.write(buffer, 0, bytesRead);
+    }
+
 }
@@ -1,13 +1,23 @@
 package edu.myrza.todoapp.util;
 
+import edu.myrza.todoapp.model.enums.StorageEncoding;
+import edu.myrza.todoapp.model.entity.SegmentEntry;
 import lombok.Getter;
 import lombok.Setter;
 
+import java.util.UUID;
+
 @Getter
 @Setter
 public class FileTreeNode extends TreeNode{
 
-    private String id;
+    private UUID id;
+    private UUID blobId;
+    private String volume;
+    // null unless the blob is packed into a segment
+    private SegmentEntry segment;
     private String name;
+    private long size;
+    private StorageEncoding storageEncoding;
 
 }
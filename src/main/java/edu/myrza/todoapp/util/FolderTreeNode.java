@@ -5,12 +5,13 @@ import lombok.Setter;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.UUID;
 
 @Getter
 @Setter
 public class FolderTreeNode extends TreeNode {
 
-    private String id;
+    private UUID id;
     private String name;
     private List<TreeNode> subnodes = new ArrayList<>();
 }
@@ -0,0 +1,69 @@
+package edu.myrza.todoapp.util;
+
+/*
+*  Approximate access frequencies of keys (count-min sketch with 4-bit counters), the admission filter of TinyLFU.
+*
+*  Every key has a counter in each of DEPTH rows, its frequency is the smallest of them, so collisions only ever
+*  overestimate it. Counters are halved after every 'sampleSize' increments, so frequencies reflect recent accesses
+*  and a key that was hot yesterday doesn't keep its place forever. Not thread safe.
+* */
+
+public class FrequencySketch {
+
+    private static final int DEPTH = 4;
+    private static final int MAX_COUNT = 15;
+    private static final int[] SEEDS = { 0x97cb3127, 0xb3a8dd41, 0x4b4cb4d5, 0x2d1c0f7b };
+
+    private final int[] table;
+    private final int width;
+    private final int sampleSize;
+    private int additions;
+
+    // 'expectedKeys' is the number of distinct keys that should be told apart, e.g. the max number of cached entries
+    public FrequencySketch(int expectedKeys) {
+        this.width = Integer.highestOneBit(Math.max(expectedKeys, 16) - 1) << 1;
+        this.table = new int[DEPTH * width];
+        this.sampleSize = 10 * width;
+    }
+
+    public void increment(Object key) {
+        int hash = spread(key.hashCode());
+        boolean added = false;
+        for(int row = 0; row < DEPTH; row++) {
+            int index = index(hash, row);
+            if(table[index] < MAX_COUNT) {
+                table[index]++;
+                added = true;
+            }
+        }
+
+        if(added && ++additions >= sampleSize)
+            reset();
+    }
+
+    public int frequency(Object key) {
+        int hash = spread(key.hashCode());
+        int frequency = MAX_COUNT;
+        for(int row = 0; row < DEPTH; row++)
+            frequency = Math.min(frequency, table[index(hash, row)]);
+        return frequency;
+    }
+
+    private void reset() {
+        for(int i = 0; i < table.length; i++)
+            table[i] >>>= 1;
+        additions /= 2;
+    }
+
+    private int index(int hash, int row) {
+        int h = (hash + SEEDS[row]) * 0x9e3779b9;
+        h ^= h >>> 16;
+        return row * width + (h & (width - 1));
+    }
+
+    private static int spread(int hash) {
+        hash *= 0x85ebca6b;
+        return hash ^ (hash >>> 13);
+    }
+
+}
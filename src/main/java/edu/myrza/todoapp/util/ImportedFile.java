@@ -0,0 +1,37 @@
+package edu.myrza.todoapp.util;
+
+/*
+*  File (already written to storage) or folder that is imported into a folder together with its relative path,
+*  see FileService.uploadTree/extractArchive.
+* */
+
+import edu.myrza.todoapp.model.entity.SegmentEntry;
+import edu.myrza.todoapp.model.enums.StorageEncoding;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+import java.util.UUID;
+
+@Getter
+@AllArgsConstructor
+public class ImportedFile {
+
+    // path segments relative to the target folder, the last one is the name
+    private final List<String> path;
+    // null for folders
+    private final UUID blobId;
+    private final String volume;
+    private final SegmentEntry segment;
+    private final long size;
+    private final StorageEncoding storageEncoding;
+
+    public static ImportedFile folder(List<String> path) {
+        return new ImportedFile(path, null, null, null, 0, StorageEncoding.IDENTITY);
+    }
+
+    public boolean isFolder() {
+        return blobId == null;
+    }
+
+}
@@ -1,19 +1,28 @@
 package edu.myrza.todoapp.util;
 
+import edu.myrza.todoapp.model.entity.SegmentEntry;
 import lombok.Getter;
 import lombok.Setter;
+import edu.myrza.todoapp.model.enums.StorageEncoding;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.util.UUID;
+
 @Getter
 @Setter
 public class MultipartFileDecorator {
 
     private MultipartFile multipartFile;
-    private String name;
+    private UUID id;
+    // storage volume the file has been written to
+    private String volume;
+    // null unless the blob is packed into a segment
+    private SegmentEntry segment;
+    private StorageEncoding storageEncoding = StorageEncoding.IDENTITY;
 
-    public MultipartFileDecorator(MultipartFile multipartFile, String newName) {
+    public MultipartFileDecorator(MultipartFile multipartFile, UUID id) {
         this.multipartFile = multipartFile;
-        this.name = newName;
+        this.id = id;
     }
 
 }
@@ -0,0 +1,84 @@
+package edu.myrza.todoapp.util;
+
+/*
+*  Counts sql statements, fetched rows and time spent in the db by the current thread, between start() and close().
+*
+*  QueryBudgetFilter opens one per http request. Tests can open their own around a call to assert a query budget:
+*
+*      try(QueryStats stats = QueryStats.start()) {
+*          fileService.deleteFiles(user, ids);
+*          assertTrue(stats.getStatements() <= 10);
+*      }
+*
+*  Scopes nest, statements are counted by every open scope of the thread. A jdbc batch counts as one statement
+*  (one round-trip). The same sql text executed over and over is the usual sign of an N+1 pattern, so executions
+*  are also counted per sql text.
+* */
+
+import java.util.*;
+
+public final class QueryStats implements AutoCloseable {
+
+    // distinct sql texts tracked per scope, the rest are counted but not kept
+    private static final int MAX_DISTINCT_SQL = 256;
+
+    private static final ThreadLocal<QueryStats> CURRENT = new ThreadLocal<>();
+
+    private final QueryStats outer;
+    private long statements;
+    private long rows;
+    private long elapsedMillis;
+    private final Map<String, Integer> executionsBySql = new HashMap<>();
+
+    private QueryStats(QueryStats outer) {
+        this.outer = outer;
+    }
+
+    public static QueryStats start() {
+        QueryStats stats = new QueryStats(CURRENT.get());
+        CURRENT.set(stats);
+        return stats;
+    }
+
+    public static Optional<QueryStats> current() {
+        return Optional.ofNullable(CURRENT.get());
+    }
+
+    public void onStatement(String sql, long elapsedMillis) {
+        for(QueryStats scope = this; scope != null; scope = scope.outer) {
+            scope.statements++;
+            scope.elapsedMillis += elapsedMillis;
+            if(scope.executionsBySql.size() < MAX_DISTINCT_SQL || scope.executionsBySql.containsKey(sql))
+                scope.executionsBySql.merge(sql, 1, Integer::sum);
+        }
+    }
+
+    public void onRow() {
+        for(QueryStats scope = this; scope != null; scope = scope.outer)
+            scope.rows++;
+    }
+
+    public long getStatements() {
+        return statements;
+    }
+
+    public long getRows() {
+        return rows;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    // sql text executed the most times within this scope
+    public Optional<Map.Entry<String, Integer>> mostRepeated() {
+        return executionsBySql.entrySet().stream().max(Map.Entry.comparingByValue());
+    }
+
+    @Override
+    public void close() {
+        if(CURRENT.get() == this)
+            CURRENT.set(outer);
+    }
+
+}
@@ -0,0 +1,43 @@
+package edu.myrza.todoapp.util;
+
+/*
+*  Feeds statements and fetched rows seen by the proxied DataSource (see QueryStatsConfig) into the thread's QueryStats.
+* */
+
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.listener.MethodExecutionContext;
+import net.ttddyy.dsproxy.listener.MethodExecutionListener;
+import net.ttddyy.dsproxy.listener.QueryExecutionListener;
+
+import java.sql.ResultSet;
+import java.util.List;
+
+public class QueryStatsListener implements QueryExecutionListener, MethodExecutionListener {
+
+    @Override
+    public void beforeQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {}
+
+    @Override
+    public void afterQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+        QueryStats.current().ifPresent(stats -> {
+            // a batch of the same statement is one round-trip, a batch of different statements is reported by its first one
+            String sql = queryInfoList.isEmpty() ? "" : queryInfoList.get(0).getQuery();
+            stats.onStatement(sql, execInfo.getElapsedTime());
+        });
+    }
+
+    @Override
+    public void beforeMethod(MethodExecutionContext executionContext) {}
+
+    @Override
+    public void afterMethod(MethodExecutionContext executionContext) {
+        if(executionContext.getTarget() instanceof ResultSet
+                && "next".equals(executionContext.getMethod().getName())
+                && Boolean.TRUE.equals(executionContext.getResult()))
+        {
+            QueryStats.current().ifPresent(QueryStats::onRow);
+        }
+    }
+
+}
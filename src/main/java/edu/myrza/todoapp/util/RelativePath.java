@@ -0,0 +1,41 @@
+package edu.myrza.todoapp.util;
+
+/*
+*  Paths of uploaded/extracted files relative to the target folder, e.g. "photos/2026/a.jpg".
+*  Both '/' and '\' separate segments, empty and '.' segments are dropped. Paths escaping the target folder
+*  ('..' segments) and names that don't fit into 'file.name' are rejected.
+* */
+
+import edu.myrza.todoapp.exceptions.BussinesException;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public final class RelativePath {
+
+    // file.name is varchar(127)
+    private static final int MAX_NAME_LENGTH = 127;
+
+    private RelativePath() {}
+
+    public static List<String> segments(String path) {
+
+        if(path == null)
+            throw new BussinesException(BussinesException.Code.PATH_001);
+
+        List<String> segments = new ArrayList<>();
+        for(String segment : path.split("[/\\\\]")) {
+            if(segment.isEmpty() || segment.equals("."))
+                continue;
+            if(segment.equals("..") || segment.length() > MAX_NAME_LENGTH || segment.indexOf('\0') >= 0)
+                throw new BussinesException(BussinesException.Code.PATH_001);
+            segments.add(segment);
+        }
+
+        if(segments.isEmpty())
+            throw new BussinesException(BussinesException.Code.PATH_001);
+
+        return segments;
+    }
+
+}
@@ -0,0 +1,214 @@
+package edu.myrza.todoapp.util;
+
+/*
+*  Sends connections of read-only transactions to read replicas and everything else to the primary.
+*
+*  The transaction's read-only flag is only known once the transaction has begun, so this must sit behind a
+*  LazyConnectionDataSourceProxy (see ReadReplicaConfig), which fetches the real connection on the first statement.
+*
+*  A replica is used only while its replication lag, refreshed every few seconds by refreshLag(), stays within
+*  'maxLagMillis' (a replica that can't be asked counts as lagging). Reads fall back to the primary when no replica
+*  qualifies. A user whose write transaction has just committed keeps reading from the primary for 'stickyMillis',
+*  so they see their own changes right away. Stickiness lives in this JVM only, so it should be a few times
+*  max-lag, so that a replica has caught up before the user's requests land on another instance.
+*
+*  Entities read from a replica may be older than what the primary has, so transactions on a replica don't put
+*  anything into the second-level cache (they still read from it).
+* */
+
+import org.hibernate.CacheMode;
+import org.hibernate.Session;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.orm.jpa.EntityManagerHolder;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+
+    private static final Logger log = LoggerFactory.getLogger(ReplicaRoutingDataSource.class);
+
+    public static final String PRIMARY = "primary";
+
+    private static final String PRIMARY_LSN_QUERY = "select cast(pg_current_wal_lsn() as varchar)";
+    // A replica that has replayed up to the primary's position read just before is up to date, however old its last
+    // replayed commit is. Otherwise it lags by the age of that commit: comparing with its own received position instead
+    // would report 0 for a replica whose WAL receiver is disconnected or stalled. Null if it has replayed nothing yet.
+    private static final String LAG_QUERY =
+            "select case when pg_last_wal_replay_lsn() >= cast(? as pg_lsn) then 0 " +
+            "else extract(epoch from now() - pg_last_xact_replay_timestamp()) * 1000 end";
+
+    private final DataSource primary;
+    private final Map<String, DataSource> replicas;
+    private final long maxLagMillis;
+    private final long stickyMillis;
+
+    // replica -> lag in millis as of the last refresh, Long.MAX_VALUE if unknown
+    private final ConcurrentMap<String, Long> lags = new ConcurrentHashMap<>();
+    private volatile List<String> usable = Collections.emptyList();
+    private final AtomicInteger next = new AtomicInteger();
+    // username -> when their last write transaction committed
+    private final ConcurrentMap<String, Long> lastWrites = new ConcurrentHashMap<>();
+
+    private final LongAdder replicaReads = new LongAdder();
+    private final LongAdder primaryReads = new LongAdder();
+
+    public ReplicaRoutingDataSource(DataSource primary, Map<String, DataSource> replicas, long maxLagMillis, long stickyMillis) {
+        this.primary = primary;
+        this.replicas = replicas;
+        this.maxLagMillis = maxLagMillis;
+        this.stickyMillis = stickyMillis;
+
+        Map<Object, Object> targets = new HashMap<>(replicas);
+        targets.put(PRIMARY, primary);
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+        setLenientFallback(false);
+
+        for(String replica : replicas.keySet())
+            lags.put(replica, Long.MAX_VALUE);
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+
+        if(!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            rememberWriteOnCommit();
+            return PRIMARY;
+        }
+
+        List<String> candidates = usable;
+        if(candidates.isEmpty() || isSticky()) {
+            primaryReads.increment();
+            return PRIMARY;
+        }
+
+        replicaReads.increment();
+        skipCachePuts();
+        return candidates.get(Math.floorMod(next.getAndIncrement(), candidates.size()));
+    }
+
+    // Asks every replica for its lag, called periodically
+    public void refreshLag() {
+        String primaryLsn = queryPrimaryLsn();
+        List<String> caughtUp = new ArrayList<>();
+        for(Map.Entry<String, DataSource> replica : replicas.entrySet()) {
+            long lag = primaryLsn == null ? Long.MAX_VALUE : queryLag(replica.getKey(), replica.getValue(), primaryLsn);
+            lags.put(replica.getKey(), lag);
+            if(lag <= maxLagMillis)
+                caughtUp.add(replica.getKey());
+        }
+        usable = Collections.unmodifiableList(caughtUp);
+
+        long expired = System.currentTimeMillis() - stickyMillis;
+        lastWrites.values().removeIf(writtenAt -> writtenAt < expired);
+    }
+
+    public double lagMillis(String replica) {
+        long lag = lags.getOrDefault(replica, Long.MAX_VALUE);
+        return lag == Long.MAX_VALUE ? Double.NaN : lag;
+    }
+
+    public long replicaReads() {
+        return replicaReads.sum();
+    }
+
+    public long primaryReads() {
+        return primaryReads.sum();
+    }
+
+    // Null if the primary can't be asked, the lag of every replica is unknown then
+    private String queryPrimaryLsn() {
+        try(Connection connection = primary.getConnection();
+            Statement statement = connection.createStatement();
+            ResultSet rs = statement.executeQuery(PRIMARY_LSN_QUERY)) {
+            rs.next();
+            return rs.getString(1);
+        } catch (SQLException ex) {
+            log.warn("Couldn't read the WAL position of the primary", ex);
+            return null;
+        }
+    }
+
+    private long queryLag(String name, DataSource replica, String primaryLsn) {
+        try(Connection connection = replica.getConnection();
+            PreparedStatement statement = connection.prepareStatement(LAG_QUERY)) {
+            statement.setString(1, primaryLsn);
+            try(ResultSet rs = statement.executeQuery()) {
+                rs.next();
+                long lag = rs.getLong(1);
+                return rs.wasNull() ? Long.MAX_VALUE : lag;
+            }
+        } catch (SQLException ex) {
+            log.warn("Couldn't check replication lag of replica [{}]", name, ex);
+            return Long.MAX_VALUE;
+        }
+    }
+
+    private void rememberWriteOnCommit() {
+        String username = currentUsername();
+        if(username == null || !TransactionSynchronizationManager.isSynchronizationActive())
+            return;
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if(status == STATUS_COMMITTED)
+                    lastWrites.put(username, System.currentTimeMillis());
+            }
+        });
+    }
+
+    private void skipCachePuts() {
+        for(Object resource : TransactionSynchronizationManager.getResourceMap().values()) {
+            if(!(resource instanceof EntityManagerHolder))
+                continue;
+
+            // the session may outlive the transaction (open-in-view), later transactions of it cache as usual
+            Session session = ((EntityManagerHolder) resource).getEntityManager().unwrap(Session.class);
+            CacheMode cacheMode = session.getCacheMode();
+            session.setCacheMode(CacheMode.GET);
+            if(TransactionSynchronizationManager.isSynchronizationActive()) {
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                    @Override
+                    public void afterCompletion(int status) {
+                        session.setCacheMode(cacheMode);
+                    }
+                });
+            }
+        }
+    }
+
+    private boolean isSticky() {
+        String username = currentUsername();
+        if(username == null)
+            return false;
+
+        Long writtenAt = lastWrites.get(username);
+        return writtenAt != null && System.currentTimeMillis() - writtenAt < stickyMillis;
+    }
+
+    private static String currentUsername() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if(authentication == null || authentication instanceof AnonymousAuthenticationToken || !authentication.isAuthenticated())
+            return null;
+        return authentication.getName();
+    }
+
+}
@@ -1,11 +1,14 @@
 package edu.myrza.todoapp.util;
 
+import edu.myrza.todoapp.model.enums.StorageEncoding;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 import org.springframework.core.io.Resource;
 
+import java.time.LocalDateTime;
+
 @Getter
 @Setter
 @AllArgsConstructor
@@ -14,5 +17,9 @@ public class ResourceDecorator {
 
     private Resource resource;
     private String originalName;
+    private StorageEncoding contentEncoding = StorageEncoding.IDENTITY;
+    private long contentLength;
+    private long version;
+    private LocalDateTime lastModified;
 
 }
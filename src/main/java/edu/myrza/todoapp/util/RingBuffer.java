@@ -0,0 +1,83 @@
+package edu.myrza.todoapp.util;
+
+/*
+*  Bounded lock-free queue for many producers and a single consumer.
+*
+*  Every slot carries a sequence number telling whose turn it is: a producer claims the next slot with a CAS on
+*  'tail' only once the consumer has freed it, and publishes the element by advancing the slot's sequence. The
+*  consumer never contends with producers, and a full buffer is reported to the producer right away instead of
+*  blocking it (see D. Vyukov's bounded MPMC queue).
+* */
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+public class RingBuffer<T> {
+
+    private final int mask;
+    private final AtomicReferenceArray<T> elements;
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();
+    // written by the consumer only
+    private volatile long head;
+
+    // 'capacity' is rounded up to a power of two
+    public RingBuffer(int capacity) {
+        int size = Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1;
+        this.mask = size - 1;
+        this.elements = new AtomicReferenceArray<>(size);
+        this.sequences = new AtomicLongArray(size);
+        for(int i = 0; i < size; i++)
+            sequences.set(i, i);
+    }
+
+    // Returns false if the buffer is full
+    public boolean offer(T element) {
+        while(true) {
+            long position = tail.get();
+            int index = (int) (position & mask);
+            long sequence = sequences.get(index);
+
+            if(sequence == position) {
+                if(tail.compareAndSet(position, position + 1)) {
+                    elements.set(index, element);
+                    sequences.set(index, position + 1);
+                    return true;
+                }
+            } else if(sequence < position) {
+                return false; // the consumer hasn't freed the slot yet
+            }
+            // otherwise another producer has just taken the slot, try the next one
+        }
+    }
+
+    // Moves up to 'max' elements into 'sink', must only be called by the consumer thread
+    public int drainTo(List<? super T> sink, int max) {
+        int drained = 0;
+        long position = head;
+        while(drained < max) {
+            int index = (int) (position & mask);
+            if(sequences.get(index) != position + 1)
+                break; // empty, or the producer hasn't published the element yet
+
+            sink.add(elements.get(index));
+            elements.set(index, null);
+            sequences.set(index, position + mask + 1);
+            position++;
+            drained++;
+        }
+        head = position;
+        return drained;
+    }
+
+    public int size() {
+        return (int) Math.max(0, tail.get() - head);
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+
+}
@@ -0,0 +1,35 @@
+package edu.myrza.todoapp.util;
+
+/*
+*  rsync's weak rolling checksum of a block: a = sum of bytes, b = sum of prefix sums (both mod 2^16), value = b << 16 | a.
+*  The checksum of the window shifted by one byte is computed from the previous one in O(1) (see roll),
+*  which lets clients look for known blocks at every offset of a modified file.
+* */
+
+public final class RollingChecksum {
+
+    private int a;
+    private int b;
+    private int length;
+
+    public static RollingChecksum of(byte[] data, int offset, int length) {
+        RollingChecksum checksum = new RollingChecksum();
+        for(int i = 0; i < length; i++) {
+            checksum.a += data[offset + i] & 0xFF;
+            checksum.b += (length - i) * (data[offset + i] & 0xFF);
+        }
+        checksum.length = length;
+        return checksum;
+    }
+
+    // moves the window one byte forward: 'out' leaves it, 'in' enters it
+    public void roll(byte out, byte in) {
+        a += (in & 0xFF) - (out & 0xFF);
+        b += a - length * (out & 0xFF);
+    }
+
+    public int value() {
+        return ((b & 0xFFFF) << 16) | (a & 0xFFFF);
+    }
+
+}
@@ -0,0 +1,193 @@
+package edu.myrza.todoapp.util;
+
+/*
+*  Append-only segment files that small blobs are packed into: <volume root>/segments/<segmentId>.seg
+*
+*  A file of its own costs a small blob an inode, a create and an open/close on every read, so archiving a folder
+*  of 100k tiny files is dominated by open() calls. Packed blobs are appended to the active segment of a volume
+*  instead and read back with positional reads through channels that stay open.
+*
+*  A segment is sealed (never written again) once it reaches 'file.storage.packed.segment-bytes' or has been
+*  active for 'file.storage.packed.seal-after-millis'. Space of deleted entries is reclaimed by SegmentCompactor,
+*  which only touches segments that haven't been modified for twice as long, so it never races with a writer
+*  (of this instance or another one sharing the volume).
+* */
+
+import edu.myrza.todoapp.model.entity.SegmentEntry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+@Component
+public class SegmentStore {
+
+    private static final String SEGMENTS_DIR = "segments";
+    private static final String SEGMENT_SUFFIX = ".seg";
+
+    private final StorageVolumes storageVolumes;
+    private final int maxPackedBytes;
+    private final long segmentBytes;
+    private final long sealAfterMillis;
+
+    // volume -> segment new entries are appended to
+    private final Map<String, ActiveSegment> active = new HashMap<>();
+    // segment id -> channel for positional reads, shared by all readers
+    private final ConcurrentMap<UUID, FileChannel> readers = new ConcurrentHashMap<>();
+
+    @Autowired
+    public SegmentStore(
+            StorageVolumes storageVolumes,
+            @Value("${file.storage.packed.max-bytes:16384}") int maxPackedBytes,
+            @Value("${file.storage.packed.segment-bytes:268435456}") long segmentBytes,
+            @Value("${file.storage.packed.seal-after-millis:600000}") long sealAfterMillis)
+    {
+        this.storageVolumes = storageVolumes;
+        this.maxPackedBytes = maxPackedBytes;
+        this.segmentBytes = segmentBytes;
+        this.sealAfterMillis = sealAfterMillis;
+    }
+
+    // Blobs of at most that many stored bytes are packed, bigger ones get files of their own
+    public int maxPackedBytes() {
+        return maxPackedBytes;
+    }
+
+    public long sealAfterMillis() {
+        return sealAfterMillis;
+    }
+
+    public SegmentEntry append(String volume, byte[] data, int length) throws IOException {
+        synchronized (active) {
+            ActiveSegment segment = active.get(volume);
+            if(segment != null && segment.isFull()) {
+                segment.channel.close();
+                active.remove(volume);
+                segment = null;
+            }
+            if(segment == null) {
+                segment = new ActiveSegment(UuidGenerator.next(), segmentsDir(volume));
+                active.put(volume, segment);
+            }
+
+            long offset = segment.channel.position();
+            ByteBuffer buffer = ByteBuffer.wrap(data, 0, length);
+            try {
+                while(buffer.hasRemaining())
+                    segment.channel.write(buffer);
+            } catch (IOException ex) {
+                // the tail of the segment is garbage now, start a new one
+                active.remove(volume);
+                segment.channel.close();
+                throw ex;
+            }
+
+            return new SegmentEntry(segment.id, offset, length);
+        }
+    }
+
+    public byte[] read(String volume, SegmentEntry entry) throws IOException {
+        FileChannel channel = reader(volume, entry.getSegmentId());
+
+        ByteBuffer buffer = ByteBuffer.allocate(entry.getLength());
+        long position = entry.getOffset();
+        while(buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if(read < 0)
+                throw new EOFException("Segment [" + entry.getSegmentId() + "] ends before entry at " + entry.getOffset());
+            position += read;
+        }
+
+        return buffer.array();
+    }
+
+    // Segments of a volume that nobody appends to anymore, with their sizes
+    public Map<UUID, Long> sealedSegments(String volume) throws IOException {
+        Path dir = segmentsDir(volume);
+        if(!Files.isDirectory(dir))
+            return Collections.emptyMap();
+
+        long modifiedBefore = System.currentTimeMillis() - 2 * sealAfterMillis;
+        Map<UUID, Long> sealed = new HashMap<>();
+        try(Stream<Path> files = Files.list(dir)) {
+            for(Path file : files.filter(f -> f.getFileName().toString().endsWith(SEGMENT_SUFFIX)).collect(Collectors.toList())) {
+                if(Files.getLastModifiedTime(file).toMillis() >= modifiedBefore)
+                    continue;
+                String name = file.getFileName().toString();
+                sealed.put(UUID.fromString(name.substring(0, name.length() - SEGMENT_SUFFIX.length())), Files.size(file));
+            }
+        }
+
+        return sealed;
+    }
+
+    public void delete(String volume, UUID segmentId) throws IOException {
+        FileChannel channel = readers.remove(segmentId);
+        if(channel != null)
+            channel.close();
+        Files.deleteIfExists(segmentPath(volume, segmentId));
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        synchronized (active) {
+            for(ActiveSegment segment : active.values())
+                segment.channel.close();
+            active.clear();
+        }
+        for(FileChannel channel : readers.values())
+            channel.close();
+        readers.clear();
+    }
+
+    private FileChannel reader(String volume, UUID segmentId) throws IOException {
+        FileChannel channel = readers.get(segmentId);
+        if(channel != null)
+            return channel;
+
+        FileChannel opened = FileChannel.open(segmentPath(volume, segmentId), StandardOpenOption.READ);
+        channel = readers.putIfAbsent(segmentId, opened);
+        if(channel != null) {
+            opened.close();
+            return channel;
+        }
+        return opened;
+    }
+
+    private Path segmentsDir(String volume) {
+        return storageVolumes.root(volume).resolve(SEGMENTS_DIR);
+    }
+
+    private Path segmentPath(String volume, UUID segmentId) {
+        return segmentsDir(volume).resolve(segmentId + SEGMENT_SUFFIX);
+    }
+
+    private class ActiveSegment {
+
+        private final UUID id;
+        private final FileChannel channel;
+        private final long createdAt = System.currentTimeMillis();
+
+        ActiveSegment(UUID id, Path dir) throws IOException {
+            Files.createDirectories(dir);
+            this.id = id;
+            this.channel = FileChannel.open(dir.resolve(id + SEGMENT_SUFFIX), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        }
+
+        boolean isFull() throws IOException {
+            return channel.position() >= segmentBytes || System.currentTimeMillis() - createdAt >= sealAfterMillis;
+        }
+    }
+
+}
@@ -0,0 +1,143 @@
+package edu.myrza.todoapp.util;
+
+/*
+*  Storage roots (usually one per disk) that blobs are spread across.
+*
+*  Configured as 'file.storage.volumes=name1=/mnt/disk1/files,name2=/mnt/disk2/files', without it there is a
+*  single volume 'default' at 'file.storage.dir'. The name of the volume a blob is written to is recorded in the db,
+*  so volumes can be added at any time (and never renamed, blobs written without the setting live on 'default', so a
+*  configured list must keep a 'default' volume at the old 'file.storage.dir'). New blobs are placed randomly with probability
+*  proportional to the free space of a volume, so an empty new disk takes most of the new writes while the rest
+*  keep serving reads. VolumeRebalancer moves existing blobs onto it.
+* */
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.io.File;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+
+@Component
+public class StorageVolumes {
+
+    public static final String DEFAULT_VOLUME = "default";
+
+    // statfs is cheap, but not cheap enough for every single write
+    private static final long SPACE_REFRESH_MILLIS = 5000;
+
+    @Value("${file.storage.dir}")
+    private String defaultRoot;
+
+    @Value("${file.storage.volumes:}")
+    private String volumesConfig;
+
+    // volumes with less free space than this don't take new blobs (unless all of them are that full)
+    @Value("${file.storage.min-free-bytes:1073741824}")
+    private long minFreeBytes;
+
+    private final Map<String, Volume> volumes = new LinkedHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        if(volumesConfig == null || volumesConfig.trim().isEmpty()) {
+            volumes.put(DEFAULT_VOLUME, new Volume(DEFAULT_VOLUME, Paths.get(defaultRoot)));
+            return;
+        }
+
+        for(String volume : volumesConfig.split(",")) {
+            String[] parts = volume.trim().split("=", 2);
+            if(parts.length != 2 || parts[0].trim().isEmpty())
+                throw new IllegalStateException("Invalid storage volume [" + volume + "], expected 'name=/path'");
+            volumes.put(parts[0].trim(), new Volume(parts[0].trim(), Paths.get(parts[1].trim())));
+        }
+    }
+
+    public Path root(String volume) {
+        Volume found = volumes.get(volume == null ? DEFAULT_VOLUME : volume);
+        if(found == null)
+            throw new IllegalStateException("Unknown storage volume [" + volume + "]");
+        return found.root;
+    }
+
+    public Collection<Volume> volumes() {
+        return Collections.unmodifiableCollection(volumes.values());
+    }
+
+    // Free-space-weighted random choice
+    public String place() {
+        if(volumes.size() == 1)
+            return volumes.keySet().iterator().next();
+
+        List<Volume> candidates = new ArrayList<>();
+        long totalWeight = 0;
+        for(Volume volume : volumes.values()) {
+            long weight = volume.usableBytes() - minFreeBytes;
+            if(weight > 0) {
+                candidates.add(volume);
+                totalWeight += weight;
+            }
+        }
+
+        if(candidates.isEmpty())
+            return volumes.values().stream().max(Comparator.comparingLong(Volume::usableBytes)).get().name;
+
+        long point = ThreadLocalRandom.current().nextLong(totalWeight);
+        for(Volume volume : candidates) {
+            point -= volume.usableBytes() - minFreeBytes;
+            if(point < 0)
+                return volume.name;
+        }
+
+        return candidates.get(candidates.size() - 1).name;
+    }
+
+    public static class Volume {
+
+        private final String name;
+        private final Path root;
+
+        private volatile long usableBytes;
+        private volatile long totalBytes;
+        private volatile long refreshedAt;
+
+        Volume(String name, Path root) {
+            this.name = name;
+            this.root = root;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public Path getRoot() {
+            return root;
+        }
+
+        public long usableBytes() {
+            refresh();
+            return usableBytes;
+        }
+
+        // share of the volume that is taken (by anything, not only by blobs)
+        public double usedFraction() {
+            refresh();
+            return totalBytes == 0 ? 0 : 1.0 - (double) usableBytes / totalBytes;
+        }
+
+        private void refresh() {
+            long now = System.currentTimeMillis();
+            if(now - refreshedAt < SPACE_REFRESH_MILLIS)
+                return;
+
+            File file = root.toFile();
+            usableBytes = file.getUsableSpace();
+            totalBytes = file.getTotalSpace();
+            refreshedAt = now;
+        }
+    }
+
+}
@@ -0,0 +1,58 @@
+package edu.myrza.todoapp.util;
+
+/*
+*  Generates time-ordered identifiers (UUID version 7, RFC 9562).
+*
+*  Layout : 48 bits unix time in millis | 4 bits version | 12 bits counter | 2 bits variant | 62 random bits
+*
+*  Ids generated later are always greater than ids generated earlier (within one JVM), so inserts into
+*  primary key b-trees land on the right-most page instead of random ones. The (timestamp, counter) pair is
+*  advanced with a CAS loop, so no locks are taken, and random bits come from ThreadLocalRandom instead of
+*  the shared SecureRandom that UUID.randomUUID() contends on.
+* */
+
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+public final class UuidGenerator {
+
+    private static final int COUNTER_BITS = 12;
+    private static final long COUNTER_MASK = (1L << COUNTER_BITS) - 1;
+
+    private static final long VERSION_7 = 0x7000L;
+    private static final long VARIANT_MASK = 0x3FFFFFFFFFFFFFFFL;
+    private static final long VARIANT_RFC = 0x8000000000000000L;
+
+    // (unix millis << COUNTER_BITS) | counter of the last generated id
+    private static final AtomicLong lastState = new AtomicLong();
+
+    private UuidGenerator() {}
+
+    public static UUID next() {
+
+        long state = nextState();
+        long millis = state >>> COUNTER_BITS;
+        long counter = state & COUNTER_MASK;
+
+        long msb = (millis << 16) | VERSION_7 | counter;
+        long lsb = (ThreadLocalRandom.current().nextLong() & VARIANT_MASK) | VARIANT_RFC;
+
+        return new UUID(msb, lsb);
+    }
+
+    // If the clock moved forward we start a new millisecond with counter 0,
+    // otherwise we increment the counter. When the counter overflows it carries into the
+    // millis part, so ids stay monotonic even if more than 4096 ids are requested within 1 ms.
+    private static long nextState() {
+        while (true) {
+            long prev = lastState.get();
+            long candidate = System.currentTimeMillis() << COUNTER_BITS;
+            long next = candidate > prev ? candidate : prev + 1;
+
+            if(lastState.compareAndSet(prev, next))
+                return next;
+        }
+    }
+
+}
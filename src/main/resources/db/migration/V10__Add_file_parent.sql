@@ -0,0 +1,9 @@
+-- Direct parent of a file/folder (null for root folders), denormalized from DIRECT edges of the closure table.
+-- (parent_id, name) is what path lookups walk through, one index probe per path segment.
+alter table file add column parent_id uuid constraint fk_file_parent references file(id) on delete cascade deferrable initially deferred;
+
+update file f set parent_id = e.ancestor
+    from edge e
+    where e.descendant = f.id and e.edge_type = 'DIRECT';
+
+create index idx_file_parent_name on file (parent_id, name);
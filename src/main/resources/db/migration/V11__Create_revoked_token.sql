@@ -0,0 +1,9 @@
+-- Tokens revoked before their expiry (logout). Tokens are stored as sha-256 hashes, rows are purged after 'expires_at'.
+create table revoked_token (
+    token_hash varchar(64) not null primary key,
+    expires_at timestamp not null,
+    revoked_at timestamp not null
+);
+
+create index idx_revoked_token_expires_at on revoked_token (expires_at);
+create index idx_revoked_token_revoked_at on revoked_token (revoked_at);
@@ -0,0 +1,9 @@
+-- Storage volume (see StorageVolumes) a blob is written to. Everything stored so far is on the 'default' volume.
+-- file.volume duplicates blob.volume so reads of a file don't need to join 'blob'.
+alter table blob add column volume varchar(31) not null default 'default';
+alter table file add column volume varchar(31);
+
+update file set volume = 'default' where blob_id is not null;
+
+-- the rebalancer walks blobs of the fullest volume
+create index idx_blob_volume on blob (volume);
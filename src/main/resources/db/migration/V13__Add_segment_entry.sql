@@ -0,0 +1,13 @@
+-- Small blobs are packed into shared append-only segment files (see SegmentStore) instead of files of their own.
+-- (segment_id, segment_offset, segment_length) locate the stored bytes, all three are null for blobs stored as files.
+-- file duplicates the location of its blob, the same way it duplicates the volume.
+alter table blob add column segment_id uuid;
+alter table blob add column segment_offset bigint;
+alter table blob add column segment_length integer;
+
+alter table file add column segment_id uuid;
+alter table file add column segment_offset bigint;
+alter table file add column segment_length integer;
+
+-- the compactor looks up live entries of a segment
+create index idx_blob_segment on blob (segment_id) where segment_id is not null;
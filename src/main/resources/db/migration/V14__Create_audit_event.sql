@@ -0,0 +1,15 @@
+-- Audit trail of file operations, written asynchronously in batches (see AuditLog).
+-- No foreign keys: events must outlive the users/files they mention, and inserts shouldn't wait on row locks.
+create table audit_event (
+    id uuid not null primary key,
+    user_id integer not null,
+    username varchar(255) not null,
+    action varchar(31) not null,
+    file_id uuid,
+    name varchar(127),
+    created_at timestamp not null
+);
+
+-- a user's events (optionally of one file) newest first
+create index idx_audit_event_user on audit_event (user_id, id);
+create index idx_audit_event_file on audit_event (file_id, id);
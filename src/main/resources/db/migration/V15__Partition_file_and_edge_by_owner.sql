@@ -0,0 +1,51 @@
+-- file and edge become hash partitioned by owner (16 partitions each), every query of the app is scoped to one owner,
+-- so it only touches that owner's partition: smaller indexes, vacuum per partition, a user's rows close together.
+-- Requires postgres 12+ (foreign keys referencing a partitioned table).
+--
+-- Unique constraints of a partitioned table must include the partition key, so primary keys become (id, owner)
+-- and edges/parents reference files by (id, owner). Ids are still generated unique (see UuidGenerator).
+
+create table file_partitioned (like file including defaults) partition by hash (owner_id);
+create table edge_partitioned (like edge including defaults) partition by hash (edge_owner_id);
+
+do $$
+begin
+    for i in 0..15 loop
+        execute format('create table file_p%s partition of file_partitioned for values with (modulus 16, remainder %s)', i, i);
+        execute format('create table edge_p%s partition of edge_partitioned for values with (modulus 16, remainder %s)', i, i);
+    end loop;
+end $$;
+
+-- rows without an owner can't be reached by any query
+insert into file_partitioned select * from file where owner_id is not null;
+insert into edge_partitioned select * from edge where edge_owner_id is not null;
+
+drop table edge;
+drop table file;
+
+alter table file_partitioned rename to file;
+alter table edge_partitioned rename to edge;
+
+alter table file alter column owner_id set not null;
+alter table edge alter column edge_owner_id set not null;
+
+alter table file add constraint pk_file primary key (id, owner_id);
+alter table edge add constraint pk_edge primary key (id, edge_owner_id);
+
+alter table file add constraint fk_file_usr foreign key (owner_id) references usr(id) on delete cascade;
+alter table file add constraint fk_file_status foreign key (status_id) references status(id);
+alter table file add constraint fk_file_blob foreign key (blob_id) references blob(id) deferrable initially deferred;
+alter table file add constraint fk_file_parent foreign key (parent_id, owner_id) references file(id, owner_id)
+    on delete cascade deferrable initially deferred;
+
+alter table edge add constraint fk_edge_user foreign key (edge_owner_id) references usr(id) on delete cascade;
+alter table edge add constraint fk_edge_ancestor_file foreign key (ancestor, edge_owner_id) references file(id, owner_id) on delete cascade;
+alter table edge add constraint fk_edge_descendant_file foreign key (descendant, edge_owner_id) references file(id, owner_id) on delete cascade;
+
+create index idx_file_parent_name on file (parent_id, name);
+create index idx_file_blob on file (blob_id);
+create index idx_edge_ancestor on edge (ancestor);
+create index idx_edge_descendant on edge (descendant);
+
+analyze file;
+analyze edge;
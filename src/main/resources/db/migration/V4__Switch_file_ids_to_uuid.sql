@@ -0,0 +1,24 @@
+-- File and edge ids become native uuid columns (16 bytes instead of 36+ byte varchar).
+-- New ids are time-ordered UUIDv7 values generated by the application (see UuidGenerator).
+
+alter table edge drop constraint fk_edge_ancestor_file;
+alter table edge drop constraint fk_edge_descendant_file;
+
+-- Root folders used the owner's username as id. Give them a deterministic uuid instead.
+update edge set ancestor = md5(ancestor)::uuid::varchar
+    where ancestor !~ '^[0-9a-fA-F]{8}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{12}$';
+update edge set descendant = md5(descendant)::uuid::varchar
+    where descendant !~ '^[0-9a-fA-F]{8}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{12}$';
+update file set id = md5(id)::uuid::varchar
+    where id !~ '^[0-9a-fA-F]{8}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{12}$';
+
+alter table file alter column id type uuid using id::uuid;
+alter table edge alter column id type uuid using id::uuid;
+alter table edge alter column ancestor type uuid using ancestor::uuid;
+alter table edge alter column descendant type uuid using descendant::uuid;
+
+alter table edge add constraint fk_edge_ancestor_file foreign key (ancestor) references file (id) on delete cascade;
+alter table edge add constraint fk_edge_descendant_file foreign key (descendant) references file (id) on delete cascade;
+
+create index idx_edge_ancestor on edge (ancestor);
+create index idx_edge_descendant on edge (descendant);
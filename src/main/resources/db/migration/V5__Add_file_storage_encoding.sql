@@ -0,0 +1,3 @@
+-- Compressible files (text, csv, json etc) may be stored gzipped on disk.
+-- 'size' keeps the original (uncompressed) size.
+alter table file add column storage_encoding varchar(15) not null default 'IDENTITY';
@@ -0,0 +1,2 @@
+-- 'version' of a folder is bumped on every mutation of its direct children, it is used to build ETags of listings
+alter table file add column version bigint not null default 0;
@@ -0,0 +1,16 @@
+-- last journal sequence number handed out to a user
+alter table usr add column change_seq bigint not null default 0;
+
+create table change_journal (
+    id uuid not null primary key,
+    owner_id integer not null constraint fk_change_journal_usr references usr(id) on delete cascade,
+    seq bigint not null,
+    change_type varchar(31) not null,
+    file_id uuid not null,
+    file_type varchar(31),
+    parent_id uuid,
+    name varchar(127),
+    size bigint not null,
+    created_at timestamp not null,
+    constraint uq_change_journal_owner_seq unique (owner_id, seq)
+);
@@ -0,0 +1,11 @@
+create table user_storage (
+    user_id integer not null primary key constraint fk_user_storage_usr references usr(id) on delete cascade,
+    used_bytes bigint not null default 0,
+    quota_bytes bigint -- null means default quota
+);
+
+insert into user_storage (user_id, used_bytes)
+select u.id, coalesce(sum(f.size), 0)
+    from usr u
+    left join file f on f.owner_id = u.id and f.status_id <> (select id from status where code = 'DELETED')
+    group by u.id;
@@ -0,0 +1,20 @@
+-- File records reference on-disk blobs, copies of a file share its blob.
+create table blob (
+    id uuid not null primary key,
+    owner_id integer constraint fk_blob_usr references usr(id) on delete cascade,
+    size bigint not null,
+    ref_count integer not null
+);
+
+-- deferred, so a file and its blob can be inserted in any order within a transaction
+alter table file add column blob_id uuid constraint fk_file_blob references blob(id) deferrable initially deferred;
+
+-- Every existing file is stored under its own id. FileType is stored by ordinal: '0' = FILE
+insert into blob (id, owner_id, size, ref_count)
+select f.id, f.owner_id, f.size, case when s.code = 'DELETED' then 0 else 1 end
+    from file f join status s on s.id = f.status_id
+    where f.file_type = '0';
+
+update file set blob_id = id where file_type = '0';
+
+create index idx_file_blob on file (blob_id);
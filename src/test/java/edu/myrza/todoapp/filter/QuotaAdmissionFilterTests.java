@@ -0,0 +1,70 @@
+package edu.myrza.todoapp.filter;
+
+import edu.myrza.todoapp.model.entity.User;
+import edu.myrza.todoapp.service.QuotaService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class QuotaAdmissionFilterTests {
+
+    private static final long REMAINING = 1024 * 1024;
+
+    private final QuotaService quotaService = mock(QuotaService.class);
+    private final QuotaAdmissionFilter filter = new QuotaAdmissionFilter(quotaService);
+
+    @BeforeEach
+    void authenticate() {
+        User user = new User();
+        user.setUsername("user");
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(user, null));
+        when(quotaService.remaining(any())).thenReturn(REMAINING);
+    }
+
+    @AfterEach
+    void cleanUp() {
+        SecurityContextHolder.clearContext();
+    }
+
+    private MockHttpServletResponse filter(String method, String uri, long contentLength) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest(method, uri);
+        request.setContent(new byte[(int) contentLength]);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        MockFilterChain chain = new MockFilterChain();
+        filter.doFilter(request, response, chain);
+        assertEquals(response.getStatus() == 200, chain.getRequest() != null, "the chain goes on only if admitted");
+        return response;
+    }
+
+    @Test
+    void rejectsUploadsLargerThanRemainingQuota() throws Exception {
+        MockHttpServletResponse response = filter("POST", "/folder/4b1c56a6-5bd6-4d1e-8f0e-2b6a1c3f0a11/upload",
+                REMAINING + QuotaAdmissionFilter.MULTIPART_OVERHEAD + 1);
+
+        assertEquals(507, response.getStatus());
+        assertEquals("{\"code\":\"QUOTA_001\"}", response.getContentAsString());
+    }
+
+    @Test
+    void admitsUploadsThatFit() throws Exception {
+        assertEquals(200, filter("POST", "/folder/4b1c56a6-5bd6-4d1e-8f0e-2b6a1c3f0a11/upload-tree",
+                REMAINING + QuotaAdmissionFilter.MULTIPART_OVERHEAD).getStatus());
+    }
+
+    @Test
+    void ignoresOtherRequests() throws Exception {
+        assertEquals(200, filter("POST", "/folder/4b1c56a6-5bd6-4d1e-8f0e-2b6a1c3f0a11/extract", 10 * REMAINING).getStatus());
+        assertEquals(200, filter("GET", "/folder/4b1c56a6-5bd6-4d1e-8f0e-2b6a1c3f0a11/upload", 10 * REMAINING).getStatus());
+        verifyNoInteractions(quotaService);
+    }
+
+}
@@ -0,0 +1,57 @@
+package edu.myrza.todoapp.repos;
+
+import edu.myrza.todoapp.model.entity.User;
+import edu.myrza.todoapp.service.UserService;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Needs the database of application.properties, run with: mvn test -Dtest=ChangeRecordRepositoryTests -Djournal-cache=true
+@SpringBootTest
+@EnabledIfSystemProperty(named = "journal-cache", matches = "true")
+class ChangeRecordRepositoryTests {
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private ChangeRecordRepository changeRecordRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void reservingSeqLeavesUserRegionPopulated() {
+        String username = "journal-cache-" + UUID.randomUUID().toString().substring(0, 8);
+        Long userId = userService.createUser(username, "password", username + "@example.com").getId();
+
+        // puts the user into the 'user' region and the findByUsername result into the query cache
+        userService.loadUserByUsername(username);
+        assertTrue(entityManagerFactory.getCache().contains(User.class, userId));
+
+        long lastSeq = changeRecordRepository.serveLastSeq(userId);
+        new TransactionTemplate(transactionManager).execute(status -> changeRecordRepository.reserveSeq(userId, 3));
+        assertEquals(lastSeq + 3, changeRecordRepository.serveLastSeq(userId));
+
+        assertTrue(entityManagerFactory.getCache().contains(User.class, userId));
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        long queryCacheHits = statistics.getQueryCacheHitCount();
+        userService.loadUserByUsername(username);
+        assertEquals(queryCacheHits + 1, statistics.getQueryCacheHitCount());
+    }
+
+}
@@ -0,0 +1,127 @@
+package edu.myrza.todoapp.repos;
+
+import edu.myrza.todoapp.model.entity.FileRecord;
+import edu.myrza.todoapp.model.entity.User;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.persistence.Cache;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Query;
+import javax.persistence.TypedQuery;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class FileRepositoryImplTests {
+
+    private final EntityManager entityManager = mock(EntityManager.class);
+    private final Cache cache = mock(Cache.class);
+    private final FileRepositoryImpl repository = new FileRepositoryImpl();
+
+    private final User owner = user(1L);
+
+    @BeforeEach
+    void setUp() {
+        EntityManagerFactory entityManagerFactory = mock(EntityManagerFactory.class);
+        when(entityManagerFactory.getCache()).thenReturn(cache);
+        when(entityManager.getEntityManagerFactory()).thenReturn(entityManagerFactory);
+        ReflectionTestUtils.setField(repository, "entityManager", entityManager);
+    }
+
+    @AfterEach
+    void cleanUp() {
+        if(TransactionSynchronizationManager.isSynchronizationActive())
+            TransactionSynchronizationManager.clearSynchronization();
+    }
+
+    private static User user(Long id) {
+        User user = new User();
+        user.setId(id);
+        return user;
+    }
+
+    private FileRecord cached(UUID id, User fileOwner) {
+        FileRecord file = FileRecord.createFolder(id, "folder", fileOwner, null);
+        when(cache.contains(FileRecord.class, id)).thenReturn(true);
+        when(entityManager.find(FileRecord.class, id)).thenReturn(file);
+        return file;
+    }
+
+    @Test
+    void servesCachedRecordOfTheOwner() {
+        UUID id = UUID.randomUUID();
+        FileRecord file = cached(id, user(1L));
+
+        assertSame(file, repository.findByIdAndOwner(id, owner).get());
+        verify(entityManager, never()).createQuery(anyString(), any());
+    }
+
+    @Test
+    void filtersOutCachedRecordOfAnotherUser() {
+        UUID id = UUID.randomUUID();
+        cached(id, user(2L));
+
+        assertFalse(repository.findByIdAndOwner(id, owner).isPresent());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void looksUpRecordsThatAreNotCachedByOwner() {
+        UUID id = UUID.randomUUID();
+        TypedQuery<FileRecord> query = mock(TypedQuery.class);
+        when(query.setParameter(anyString(), any())).thenReturn(query);
+        when(query.getResultList()).thenReturn(Collections.emptyList());
+        when(entityManager.createQuery(anyString(), eq(FileRecord.class))).thenReturn(query);
+
+        assertFalse(repository.findByIdAndOwner(id, owner).isPresent());
+        verify(query).setParameter("owner", owner);
+        verify(entityManager, never()).find(any(), any());
+    }
+
+    @Test
+    void evictsUpdatedRecordsRightAwayAndAfterTheTransaction() {
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        Query query = mock(Query.class);
+        when(query.setParameter(anyString(), any())).thenReturn(query);
+        when(query.getResultList()).thenReturn(Arrays.asList(first.toString(), second.toString()));
+        when(entityManager.createNativeQuery(anyString())).thenReturn(query);
+        TransactionSynchronizationManager.initSynchronization();
+
+        assertEquals(2, repository.bumpVersions(owner, Arrays.asList(first, second), LocalDateTime.now()));
+        verify(entityManager).flush();
+        verify(cache).evict(FileRecord.class, first);
+        verify(cache).evict(FileRecord.class, second);
+
+        for(TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations())
+            synchronization.afterCompletion(TransactionSynchronization.STATUS_COMMITTED);
+        verify(cache, times(2)).evict(FileRecord.class, first);
+        verify(cache, times(2)).evict(FileRecord.class, second);
+        verifyNoMoreInteractions(cache);
+    }
+
+    @Test
+    void evictsNothingWhenNothingWasUpdated() {
+        Query query = mock(Query.class);
+        when(query.setParameter(anyString(), any())).thenReturn(query);
+        when(query.getResultList()).thenReturn(Collections.emptyList());
+        when(entityManager.createNativeQuery(anyString())).thenReturn(query);
+        TransactionSynchronizationManager.initSynchronization();
+
+        assertEquals(0, repository.relocateBlob(UUID.randomUUID(), "default"));
+        assertTrue(TransactionSynchronizationManager.getSynchronizations().isEmpty());
+        verifyNoInteractions(cache);
+    }
+
+}
@@ -0,0 +1,146 @@
+package edu.myrza.todoapp.service;
+
+import edu.myrza.todoapp.exceptions.BussinesException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DeltaSyncServiceTests {
+
+    private static final int BLOCK_SIZE = 4;
+    // blocks "0123" "4567" "89"
+    private static final String BASE = "0123456789";
+
+    @TempDir
+    Path dir;
+
+    private FileChannel base;
+    private final ByteArrayOutputStream delta = new ByteArrayOutputStream();
+    private final DataOutputStream ops = new DataOutputStream(delta);
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+    @BeforeEach
+    void setUp() throws IOException {
+        Path path = dir.resolve("base");
+        Files.write(path, BASE.getBytes(StandardCharsets.UTF_8));
+        base = FileChannel.open(path, StandardOpenOption.READ);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        base.close();
+    }
+
+    private void copy(int firstBlock, int blockCount) throws IOException {
+        ops.writeByte(0x01);
+        ops.writeInt(firstBlock);
+        ops.writeInt(blockCount);
+    }
+
+    private void data(String literal) throws IOException {
+        byte[] bytes = literal.getBytes(StandardCharsets.UTF_8);
+        ops.writeByte(0x02);
+        ops.writeInt(bytes.length);
+        ops.write(bytes);
+    }
+
+    private long apply(long maxSize) throws IOException {
+        return DeltaSyncService.apply(new DataInputStream(new ByteArrayInputStream(delta.toByteArray())), base, BLOCK_SIZE, out, maxSize);
+    }
+
+    private static void assertMalformed(Executable executable) {
+        BussinesException ex = assertThrows(BussinesException.class, executable);
+        assertEquals(BussinesException.Code.DELTA_002, ex.getCode());
+    }
+
+    @Test
+    void rebuildsContentFromCopiesAndData() throws IOException {
+        data(">");
+        copy(1, 2); // the last block is shorter
+        data("|");
+        copy(0, 1);
+
+        assertEquals(12, apply(12));
+        assertEquals(">456789|0123", new String(out.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void rejectsCopiesOutsideOfTheBase() throws IOException {
+        copy(3, 1);
+        assertMalformed(() -> apply(100));
+    }
+
+    @Test
+    void rejectsNegativeAndEmptyCopies() throws IOException {
+        copy(-1, 1);
+        assertMalformed(() -> apply(100));
+
+        delta.reset();
+        copy(0, 0);
+        assertMalformed(() -> apply(100));
+    }
+
+    @Test
+    void rejectsContentOverMaxSize() throws IOException {
+        copy(0, 3);
+        assertMalformed(() -> apply(9));
+
+        delta.reset();
+        data("0123456789");
+        assertMalformed(() -> apply(9));
+    }
+
+    @Test
+    void rejectsNegativeDataLength() throws IOException {
+        ops.writeByte(0x02);
+        ops.writeInt(-1);
+        assertMalformed(() -> apply(100));
+    }
+
+    @Test
+    void rejectsUnknownAndTruncatedInstructions() throws IOException {
+        ops.writeByte(0x03);
+        assertMalformed(() -> apply(100));
+
+        delta.reset();
+        copy(0, 1);
+        byte[] truncated = Arrays.copyOf(delta.toByteArray(), 5);
+        assertMalformed(() -> DeltaSyncService.apply(new DataInputStream(new ByteArrayInputStream(truncated)), base, BLOCK_SIZE, out, 100));
+
+        delta.reset();
+        ops.writeByte(0x02);
+        ops.writeInt(10);
+        ops.write(new byte[3]);
+        assertMalformed(() -> apply(100));
+    }
+
+    @Test
+    void boundsTheNumberOfBlocks() {
+        long huge = 100L * 1024 * 1024 * 1024;
+
+        int blockSize = DeltaSyncService.defaultBlockSize(huge);
+        assertTrue((huge + blockSize - 1) / blockSize <= DeltaSyncService.MAX_BLOCK_COUNT);
+        assertEquals(1024, DeltaSyncService.defaultBlockSize(10_000));
+
+        assertMalformed(() -> DeltaSyncService.checkBlockSize(1024, huge));
+        assertEquals(blockSize, DeltaSyncService.checkBlockSize(blockSize, huge));
+        assertMalformed(() -> DeltaSyncService.defaultBlockSize(1024L * 1024 * 1024 * 1024));
+    }
+
+}
@@ -0,0 +1,63 @@
+package edu.myrza.todoapp.service;
+
+import edu.myrza.todoapp.exceptions.ServiceOverloadedException;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HeavyOperationSchedulerTests {
+
+	private HeavyOperationScheduler scheduler(int maxQueued, int maxQueuedPerUser) {
+		MockEnvironment env = new MockEnvironment()
+				.withProperty("heavy-ops.archive.max-concurrent", "1")
+				.withProperty("heavy-ops.archive.max-queued", String.valueOf(maxQueued))
+				.withProperty("heavy-ops.archive.max-queued-per-user", String.valueOf(maxQueuedPerUser))
+				.withProperty("heavy-ops.archive.max-wait-seconds", "5");
+		return new HeavyOperationScheduler(env);
+	}
+
+	@Test
+	void rejectsWhenUsersShareOfQueueIsFull() throws Exception {
+		HeavyOperationScheduler scheduler = scheduler(10, 1);
+		HeavyOperationScheduler.Permit running = scheduler.acquire(HeavyOperationScheduler.Kind.ARCHIVE, "a");
+
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		Future<?> queued = executor.submit(() -> scheduler.acquire(HeavyOperationScheduler.Kind.ARCHIVE, "a").close());
+		Thread.sleep(200);
+
+		assertThrows(ServiceOverloadedException.class, () -> scheduler.acquire(HeavyOperationScheduler.Kind.ARCHIVE, "a"));
+
+		running.close();
+		queued.get(5, TimeUnit.SECONDS);
+		executor.shutdown();
+	}
+
+	@Test
+	void grantsQueuedSlotsRoundRobinAcrossUsers() throws Exception {
+		HeavyOperationScheduler scheduler = scheduler(10, 10);
+		HeavyOperationScheduler.Permit running = scheduler.acquire(HeavyOperationScheduler.Kind.ARCHIVE, "a");
+
+		List<String> order = new CopyOnWriteArrayList<>();
+		ExecutorService executor = Executors.newFixedThreadPool(3);
+		for(String user : new String[] { "a", "a", "b" }) {
+			executor.submit(() -> {
+				try(HeavyOperationScheduler.Permit permit = scheduler.acquire(HeavyOperationScheduler.Kind.ARCHIVE, user)) {
+					order.add(user);
+				}
+			});
+			Thread.sleep(100); // make queueing order deterministic
+		}
+
+		running.close();
+		executor.shutdown();
+		assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+
+		assertEquals(Arrays.asList("a", "b", "a"), order);
+	}
+
+}
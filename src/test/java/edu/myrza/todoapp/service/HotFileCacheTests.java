@@ -0,0 +1,75 @@
+package edu.myrza.todoapp.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HotFileCacheTests {
+
+	private final HotFileCache cache = new HotFileCache(200, 100, new SimpleMeterRegistry());
+
+	@Test
+	void admitsOnlyRepeatedlyRequestedFiles() {
+		UUID file = UUID.randomUUID();
+
+		cache.get(file, 1);
+		assertFalse(cache.admits(file, 10));
+
+		cache.get(file, 1);
+		cache.get(file, 1);
+		assertTrue(cache.admits(file, 10));
+		assertFalse(cache.admits(file, 101));
+	}
+
+	@Test
+	void servesCachedVersionOnly() {
+		UUID file = UUID.randomUUID();
+		cache.put(file, 1, new byte[] { 1, 2, 3 });
+
+		Optional<ByteBuffer> hit = cache.get(file, 1);
+		assertTrue(hit.isPresent());
+		assertTrue(hit.get().isDirect());
+		assertEquals(3, hit.get().remaining());
+
+		assertFalse(cache.get(file, 2).isPresent());
+	}
+
+	@Test
+	void rarelyRequestedFileDoesntReplaceHotOne() {
+		UUID hot = UUID.randomUUID();
+		UUID cold = UUID.randomUUID();
+		for(int i = 0; i < 5; i++)
+			cache.get(hot, 1);
+		cache.put(hot, 1, new byte[150]);
+
+		for(int i = 0; i < 3; i++)
+			cache.get(cold, 1);
+		assertFalse(cache.admits(cold, 100));
+
+		for(int i = 0; i < 3; i++)
+			cache.get(cold, 1);
+		assertTrue(cache.admits(cold, 100));
+		cache.put(cold, 1, new byte[100]);
+
+		assertFalse(cache.get(hot, 1).isPresent());
+		assertEquals(100, cache.bytes());
+	}
+
+	@Test
+	void evictsChangedFiles() {
+		UUID file = UUID.randomUUID();
+		cache.put(file, 1, new byte[10]);
+
+		cache.evict(Collections.singleton(file));
+
+		assertEquals(0, cache.size());
+		assertEquals(0, cache.bytes());
+	}
+
+}
@@ -0,0 +1,123 @@
+package edu.myrza.todoapp.service;
+
+import edu.myrza.todoapp.model.entity.BlobRecord;
+import edu.myrza.todoapp.model.entity.SegmentEntry;
+import edu.myrza.todoapp.repos.BlobRepository;
+import edu.myrza.todoapp.util.SegmentStore;
+import edu.myrza.todoapp.util.StorageVolumes;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Collections;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class SegmentCompactorTests {
+
+    private static final String VOLUME = StorageVolumes.DEFAULT_VOLUME;
+    private static final long SEAL_AFTER_MILLIS = 1000;
+
+    @TempDir
+    Path root;
+
+    private final FileService fileService = mock(FileService.class);
+    private final BlobRepository blobRepository = mock(BlobRepository.class);
+
+    private StorageVolumes volumes;
+    private SegmentStore store;
+
+    @BeforeEach
+    void setUp() {
+        volumes = new StorageVolumes();
+        ReflectionTestUtils.setField(volumes, "defaultRoot", root.toString());
+        ReflectionTestUtils.setField(volumes, "volumesConfig", "");
+        volumes.init();
+
+        store = new SegmentStore(volumes, 16, 32, SEAL_AFTER_MILLIS);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        store.close();
+    }
+
+    private SegmentCompactor compactor(boolean enabled) {
+        return new SegmentCompactor(fileService, store, volumes, blobRepository, enabled, 0.5, 0);
+    }
+
+    // A segment of 32 bytes, 'live' at its start, nothing writes to it anymore
+    private SegmentEntry sealedSegment(String live) throws IOException {
+        byte[] bytes = live.getBytes(StandardCharsets.UTF_8);
+        SegmentEntry entry = store.append(VOLUME, bytes, bytes.length);
+        store.append(VOLUME, new byte[32 - bytes.length], 32 - bytes.length);
+
+        Path segment = root.resolve("segments").resolve(entry.getSegmentId() + ".seg");
+        Files.setLastModifiedTime(segment, FileTime.fromMillis(System.currentTimeMillis() - 3 * SEAL_AFTER_MILLIS));
+        return entry;
+    }
+
+    private void liveBlob(UUID blobId, SegmentEntry entry) {
+        when(blobRepository.serveLiveInSegment(entry.getSegmentId()))
+                .thenReturn(Collections.singletonList(new BlobRecord(blobId, null, entry.getLength(), VOLUME, entry)));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void movesLiveEntriesOutOfMostlyDeadSegments() throws IOException {
+        UUID blobId = UUID.randomUUID();
+        SegmentEntry entry = sealedSegment("live");
+        liveBlob(blobId, entry);
+        SegmentCompactor compactor = compactor(true);
+
+        compactor.compact();
+
+        ArgumentCaptor<Map<UUID, SegmentEntry>> moved = ArgumentCaptor.forClass(Map.class);
+        verify(fileService).relocateSegmentEntries(eq(entry.getSegmentId()), moved.capture());
+        SegmentEntry to = moved.getValue().get(blobId);
+        assertNotEquals(entry.getSegmentId(), to.getSegmentId());
+        assertEquals("live", new String(store.read(VOLUME, to), StandardCharsets.UTF_8));
+
+        // readers may still hold the old entry until the grace period (0 here) is over on the next run
+        Path segment = root.resolve("segments").resolve(entry.getSegmentId() + ".seg");
+        assertTrue(Files.exists(segment));
+        compactor.compact();
+        assertFalse(Files.exists(segment));
+        verify(fileService, times(1)).relocateSegmentEntries(any(), any());
+    }
+
+    @Test
+    void leavesMostlyLiveSegmentsAlone() throws IOException {
+        SegmentEntry entry = sealedSegment("mostly live, sixteen+ bytes");
+        liveBlob(UUID.randomUUID(), entry);
+
+        compactor(true).compact();
+
+        verify(fileService, never()).relocateSegmentEntries(any(), any());
+        assertTrue(Files.exists(root.resolve("segments").resolve(entry.getSegmentId() + ".seg")));
+    }
+
+    @Test
+    void doesNothingUnlessEnabled() throws IOException {
+        SegmentEntry entry = sealedSegment("live");
+
+        compactor(false).compact();
+
+        verifyNoInteractions(fileService, blobRepository);
+        assertTrue(Files.exists(root.resolve("segments").resolve(entry.getSegmentId() + ".seg")));
+    }
+
+}
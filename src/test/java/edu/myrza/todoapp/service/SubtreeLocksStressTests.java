@@ -0,0 +1,106 @@
+package edu.myrza.todoapp.service;
+
+import edu.myrza.todoapp.model.entity.User;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Needs the database of application.properties, run with: mvn test -Dtest=SubtreeLocksStressTests -Dtree-stress=true
+@SpringBootTest(properties = {
+        "file.storage.dir=${java.io.tmpdir}/tree-stress/files",
+        "file.storage.tmp.dir=${java.io.tmpdir}/tree-stress/tmp" })
+@EnabledIfSystemProperty(named = "tree-stress", matches = "true")
+class SubtreeLocksStressTests {
+
+    private static final int THREADS = 8;
+    private static final int OPERATIONS = 4000;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private FileService fileService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void closureTableStaysConsistentUnderConcurrentMutations() throws Exception {
+        String username = "tree-stress-" + UUID.randomUUID().toString().substring(0, 8);
+        User user = userService.createUser(username, "password", username + "@example.com");
+        UUID rootId = fileService.prepareUserRootFolder(user).getId();
+
+        List<UUID> folders = new CopyOnWriteArrayList<>(Collections.singletonList(rootId));
+        AtomicInteger failed = new AtomicInteger();
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> futures = new ArrayList<>();
+        for(int i = 0; i < OPERATIONS; i++) {
+            int n = i;
+            futures.add(executor.submit(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                UUID folder = folders.get(random.nextInt(folders.size()));
+                UUID other = folders.get(random.nextInt(folders.size()));
+                try {
+                    int op = random.nextInt(100);
+                    if(op < 35)
+                        folders.add(fileService.createFolder(user, folder, "folder-" + n).getId());
+                    else if(op < 75)
+                        fileService.moveFiles(user, rootId, other, Collections.singletonList(folder));
+                    else if(op < 90)
+                        fileService.uploadFiles(user, folder, new MultipartFile[] {
+                                new MockMultipartFile("file", "file-" + n + ".txt", "text/plain", new byte[] { (byte) n }) });
+                    else if(!folder.equals(rootId))
+                        fileService.deleteFiles(user, Collections.singletonList(folder));
+                } catch (RuntimeException ex) {
+                    failed.incrementAndGet(); // e.g. a deadlock detected by postgres, the operation is rolled back
+                }
+            }));
+        }
+        for(Future<?> future : futures)
+            future.get(5, TimeUnit.MINUTES);
+        executor.shutdown();
+
+        assertTrue(failed.get() < OPERATIONS / 100, failed.get() + " operations failed");
+        assertClosureTableConsistent(user);
+    }
+
+    private void assertClosureTableConsistent(User user) {
+        Map<UUID, UUID> parents = new HashMap<>();
+        jdbcTemplate.query("select id, parent_id from file where owner_id = ?",
+                rs -> { parents.put((UUID) rs.getObject("id"), (UUID) rs.getObject("parent_id")); }, user.getId());
+
+        Set<List<UUID>> edges = new HashSet<>();
+        jdbcTemplate.query("select ancestor, descendant, edge_type from edge where edge_owner_id = ?", rs -> {
+            UUID ancestor = (UUID) rs.getObject("ancestor");
+            UUID descendant = (UUID) rs.getObject("descendant");
+            assertTrue(edges.add(Arrays.asList(ancestor, descendant)), "duplicate edge " + ancestor + " -> " + descendant);
+            assertEquals(ancestor.equals(parents.get(descendant)), "DIRECT".equals(rs.getString("edge_type")),
+                    "edge type of " + ancestor + " -> " + descendant);
+        }, user.getId());
+
+        // every file's edges are exactly the ones to the folders on its way up to the root
+        Set<List<UUID>> expected = new HashSet<>();
+        for(UUID file : parents.keySet()) {
+            UUID ancestor = parents.get(file);
+            for(int depth = 0; ancestor != null; depth++) {
+                assertTrue(depth < parents.size(), "cycle above " + file);
+                expected.add(Arrays.asList(ancestor, file));
+                ancestor = parents.get(ancestor);
+            }
+        }
+        assertEquals(1, parents.values().stream().filter(Objects::isNull).count());
+        assertEquals(expected, edges);
+    }
+
+}
@@ -0,0 +1,47 @@
+package edu.myrza.todoapp.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ThumbnailServiceTests {
+
+    private final ThumbnailService thumbnailService = new ThumbnailService(null, null, null, 200, 1000, 1, 1);
+
+    @AfterEach
+    void tearDown() {
+        thumbnailService.shutdown();
+    }
+
+    private static ByteArrayInputStream png(int width, int height) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB), "png", out);
+        return new ByteArrayInputStream(out.toByteArray());
+    }
+
+    @Test
+    void decodesImagesWithinPixelLimit() throws IOException {
+        BufferedImage image = thumbnailService.readImage(png(40, 25));
+
+        assertEquals(40, image.getWidth());
+        assertEquals(25, image.getHeight());
+    }
+
+    @Test
+    void skipsImagesOverPixelLimitWithoutDecodingThem() throws IOException {
+        assertNull(thumbnailService.readImage(png(40, 26)));
+    }
+
+    @Test
+    void skipsFilesThatAreNotImages() throws IOException {
+        assertNull(thumbnailService.readImage(new ByteArrayInputStream("not an image".getBytes())));
+    }
+
+}
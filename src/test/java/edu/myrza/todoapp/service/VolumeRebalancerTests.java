@@ -0,0 +1,101 @@
+package edu.myrza.todoapp.service;
+
+import edu.myrza.todoapp.repos.BlobRepository;
+import edu.myrza.todoapp.util.FileSystemUtil;
+import edu.myrza.todoapp.util.StorageVolumes;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class VolumeRebalancerTests {
+
+    private static final UUID BLOB_ID = UUID.randomUUID();
+
+    @TempDir
+    Path dir;
+
+    private final FileService fileService = mock(FileService.class);
+    private final StorageVolumes storageVolumes = mock(StorageVolumes.class);
+    private final BlobRepository blobRepository = mock(BlobRepository.class);
+    private final FileSystemUtil fileSystemUtil = new FileSystemUtil();
+
+    private Path original;
+    private Path copy;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        StorageVolumes.Volume full = volume("full", 0.9);
+        StorageVolumes.Volume empty = volume("empty", 0.1);
+        when(storageVolumes.volumes()).thenReturn(Arrays.asList(full, empty));
+        when(storageVolumes.root("full")).thenReturn(dir.resolve("full"));
+        when(storageVolumes.root("empty")).thenReturn(dir.resolve("empty"));
+        ReflectionTestUtils.setField(fileSystemUtil, "storageVolumes", storageVolumes);
+
+        when(blobRepository.serveLiveOnVolume(eq("full"), any(), any()))
+                .thenReturn(Collections.singletonList(new Object[] { BLOB_ID, "user" }));
+
+        original = dir.resolve("full").resolve("user").resolve(BLOB_ID.toString());
+        copy = dir.resolve("empty").resolve("user").resolve(BLOB_ID.toString());
+        Files.createDirectories(original.getParent());
+        Files.write(original, new byte[] { 1, 2, 3 });
+    }
+
+    private static StorageVolumes.Volume volume(String name, double usedFraction) {
+        StorageVolumes.Volume volume = mock(StorageVolumes.Volume.class);
+        when(volume.getName()).thenReturn(name);
+        when(volume.usedFraction()).thenReturn(usedFraction);
+        return volume;
+    }
+
+    private VolumeRebalancer rebalancer(boolean enabled) {
+        return new VolumeRebalancer(fileService, fileSystemUtil, storageVolumes, blobRepository, enabled, 0.1, 10, 0);
+    }
+
+    @Test
+    void copiesBlobThenSwitchesItsVolumeThenDeletesTheOriginal() throws Exception {
+        when(fileService.relocateBlob(BLOB_ID, "full", "empty")).thenReturn(true);
+        VolumeRebalancer rebalancer = rebalancer(true);
+
+        rebalancer.rebalance();
+        assertArrayEquals(new byte[] { 1, 2, 3 }, Files.readAllBytes(copy));
+        // readers that resolved the old location may still be reading it
+        assertTrue(Files.exists(original));
+
+        // the grace period (0 here) is over on the next run
+        when(blobRepository.serveLiveOnVolume(eq("full"), any(), any())).thenReturn(Collections.emptyList());
+        rebalancer.rebalance();
+        assertFalse(Files.exists(original));
+        assertTrue(Files.exists(copy));
+    }
+
+    @Test
+    void discardsTheCopyIfTheBlobMovedMeanwhile() {
+        when(fileService.relocateBlob(BLOB_ID, "full", "empty")).thenReturn(false);
+
+        rebalancer(true).rebalance();
+
+        assertTrue(Files.exists(original));
+        assertFalse(Files.exists(copy));
+    }
+
+    @Test
+    void doesNothingUnlessEnabled() {
+        rebalancer(false).rebalance();
+
+        verifyNoInteractions(blobRepository, fileService);
+        assertFalse(Files.exists(copy));
+    }
+
+}
@@ -0,0 +1,41 @@
+package edu.myrza.todoapp.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BloomFilterTests {
+
+	@Test
+	void neverMissesPutKeys() throws Exception {
+		BloomFilter filter = new BloomFilter(10_000, 0.001);
+		for(int i = 0; i < 10_000; i++)
+			filter.put(sha256("token-" + i));
+
+		for(int i = 0; i < 10_000; i++)
+			assertTrue(filter.mightContain(sha256("token-" + i)));
+	}
+
+	@Test
+	void falsePositiveRateStaysNearConfigured() throws Exception {
+		BloomFilter filter = new BloomFilter(10_000, 0.001);
+		for(int i = 0; i < 10_000; i++)
+			filter.put(sha256("token-" + i));
+
+		int falsePositives = 0;
+		for(int i = 0; i < 100_000; i++) {
+			if(filter.mightContain(sha256("other-" + i)))
+				falsePositives++;
+		}
+
+		assertTrue(falsePositives < 500, "false positives: " + falsePositives);
+	}
+
+	private static byte[] sha256(String key) throws Exception {
+		return MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8));
+	}
+
+}
@@ -0,0 +1,67 @@
+package edu.myrza.todoapp.util;
+
+import edu.myrza.todoapp.exceptions.BussinesException;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BoundedZipInputStreamTests {
+
+	@Test
+	void extractsOrdinaryArchive() throws IOException {
+		byte[] random = new byte[2 * 1024 * 1024];
+		new Random(42).nextBytes(random);
+
+		try(BoundedZipInputStream zip = new BoundedZipInputStream(new ByteArrayInputStream(zip(random, 3)), 10, Long.MAX_VALUE, 100)) {
+			assertEquals(3 * random.length, drain(zip));
+		}
+	}
+
+	@Test
+	void rejectsHighlyCompressedArchive() throws IOException {
+		byte[] zeros = new byte[64 * 1024 * 1024];
+
+		try(BoundedZipInputStream zip = new BoundedZipInputStream(new ByteArrayInputStream(zip(zeros, 1)), 10, Long.MAX_VALUE, 100)) {
+			BussinesException ex = assertThrows(BussinesException.class, () -> drain(zip));
+			assertEquals(BussinesException.Code.ARCHIVE_001, ex.getCode());
+		}
+	}
+
+	@Test
+	void rejectsTooManyEntries() throws IOException {
+		try(BoundedZipInputStream zip = new BoundedZipInputStream(new ByteArrayInputStream(zip(new byte[16], 5)), 4, Long.MAX_VALUE, 100)) {
+			assertThrows(BussinesException.class, () -> drain(zip));
+		}
+	}
+
+	private static long drain(BoundedZipInputStream zip) throws IOException {
+		long total = 0;
+		byte[] buffer = new byte[64 * 1024];
+		while(zip.getNextEntry() != null) {
+			int bytesRead;
+			while((bytesRead = zip.read(buffer)) >= 0)
+				total += bytesRead;
+		}
+		return total;
+	}
+
+	private static byte[] zip(byte[] content, int entries) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try(ZipOutputStream zos = new ZipOutputStream(bytes)) {
+			for(int i = 0; i < entries; i++) {
+				zos.putNextEntry(new ZipEntry("dir/file-" + i + ".bin"));
+				zos.write(content);
+				zos.closeEntry();
+			}
+		}
+		return bytes.toByteArray();
+	}
+
+}
@@ -0,0 +1,55 @@
+package edu.myrza.todoapp.util;
+
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QueryStatsTests {
+
+	private final QueryStatsListener listener = new QueryStatsListener();
+
+	@Test
+	void countsStatementsOfOpenScopesOnly() {
+		execute("select 1");
+
+		try(QueryStats outer = QueryStats.start()) {
+			execute("select 1");
+			try(QueryStats inner = QueryStats.start()) {
+				execute("select 2");
+				execute("select 2");
+				assertEquals(2, inner.getStatements());
+			}
+			execute("select 3");
+
+			assertEquals(4, outer.getStatements());
+			assertEquals(20, outer.getElapsedMillis());
+		}
+
+		assertFalse(QueryStats.current().isPresent());
+	}
+
+	@Test
+	void reportsMostRepeatedStatement() {
+		try(QueryStats stats = QueryStats.start()) {
+			execute("select * from folder where id = ?");
+			for(int i = 0; i < 10; i++)
+				execute("select * from edge where ancestor = ?");
+
+			Map.Entry<String, Integer> mostRepeated = stats.mostRepeated().get();
+			assertEquals("select * from edge where ancestor = ?", mostRepeated.getKey());
+			assertEquals(10, mostRepeated.getValue());
+		}
+	}
+
+	private void execute(String sql) {
+		ExecutionInfo info = new ExecutionInfo();
+		info.setElapsedTime(5);
+		listener.afterQuery(info, Collections.singletonList(new QueryInfo(sql)));
+	}
+
+}
@@ -0,0 +1,56 @@
+package edu.myrza.todoapp.util;
+
+import edu.myrza.todoapp.exceptions.BussinesException;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RelativePathTests {
+
+    private static void assertRejected(String path) {
+        BussinesException ex = assertThrows(BussinesException.class, () -> RelativePath.segments(path), path);
+        assertEquals(BussinesException.Code.PATH_001, ex.getCode());
+    }
+
+    @Test
+    void splitsOnBothSeparators() {
+        assertEquals(Arrays.asList("photos", "2026", "a.jpg"), RelativePath.segments("photos/2026\\a.jpg"));
+    }
+
+    @Test
+    void dropsEmptyAndCurrentDirectorySegments() {
+        assertEquals(Arrays.asList("a", "b.txt"), RelativePath.segments("a//./b.txt/"));
+    }
+
+    @Test
+    void absolutePathsStayInsideTheTargetFolder() {
+        assertEquals(Arrays.asList("etc", "passwd"), RelativePath.segments("/etc/passwd"));
+        assertEquals(Arrays.asList("C:", "a.txt"), RelativePath.segments("C:\\a.txt"));
+    }
+
+    @Test
+    void rejectsParentSegments() {
+        assertRejected("../a.txt");
+        assertRejected("a/../../b.txt");
+        assertRejected("a\\..\\b.txt");
+    }
+
+    @Test
+    void rejectsPathsWithoutNames() {
+        assertRejected(null);
+        assertRejected("");
+        assertRejected("/");
+        assertRejected("./\\.");
+    }
+
+    @Test
+    void rejectsNamesThatDontFit() {
+        char[] name = new char[128];
+        Arrays.fill(name, 'a');
+        assertRejected(new String(name));
+        assertRejected("a\0b");
+    }
+
+}
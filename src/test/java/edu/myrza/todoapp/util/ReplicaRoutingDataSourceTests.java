@@ -0,0 +1,117 @@
+package edu.myrza.todoapp.util;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class ReplicaRoutingDataSourceTests {
+
+	private final Connection primaryConnection = mock(Connection.class);
+	private final Connection replicaConnection = mock(Connection.class);
+
+	@AfterEach
+	void cleanUp() {
+		if(TransactionSynchronizationManager.isSynchronizationActive())
+			TransactionSynchronizationManager.clearSynchronization();
+		TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+		SecurityContextHolder.clearContext();
+	}
+
+	// 'replicaLagMillis' null: the replica hasn't replayed anything yet
+	private ReplicaRoutingDataSource router(Long replicaLagMillis) throws SQLException {
+		DataSource primary = mock(DataSource.class);
+		when(primary.getConnection()).thenReturn(primaryConnection);
+		ResultSet lsn = mock(ResultSet.class);
+		when(lsn.getString(1)).thenReturn("0/16B3748");
+		Statement primaryStatement = mock(Statement.class);
+		when(primaryStatement.executeQuery(anyString())).thenReturn(lsn);
+		when(primaryConnection.createStatement()).thenReturn(primaryStatement);
+
+		ResultSet lag = mock(ResultSet.class);
+		when(lag.getLong(1)).thenReturn(replicaLagMillis == null ? 0 : replicaLagMillis);
+		when(lag.wasNull()).thenReturn(replicaLagMillis == null);
+		PreparedStatement statement = mock(PreparedStatement.class);
+		when(statement.executeQuery()).thenReturn(lag);
+		when(replicaConnection.prepareStatement(anyString())).thenReturn(statement);
+		DataSource replica = mock(DataSource.class);
+		when(replica.getConnection()).thenReturn(replicaConnection);
+
+		ReplicaRoutingDataSource router = new ReplicaRoutingDataSource(primary, Collections.singletonMap("replica-0", replica), 1000, 60000);
+		router.afterPropertiesSet();
+		router.refreshLag();
+		return router;
+	}
+
+	@Test
+	void sendsReadOnlyTransactionsToCaughtUpReplica() throws Exception {
+		ReplicaRoutingDataSource router = router(10L);
+
+		assertSame(primaryConnection, router.getConnection());
+
+		TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+		assertSame(replicaConnection, router.getConnection());
+	}
+
+	@Test
+	void fallsBackToPrimaryWhenReplicaLags() throws Exception {
+		ReplicaRoutingDataSource router = router(5000L);
+
+		TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+		assertSame(primaryConnection, router.getConnection());
+		assertEquals(1, router.primaryReads());
+	}
+
+	@Test
+	void replicaThatHasReplayedNothingIsNotUsed() throws Exception {
+		ReplicaRoutingDataSource router = router(null);
+
+		TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+		assertSame(primaryConnection, router.getConnection());
+		assertTrue(Double.isNaN(router.lagMillis("replica-0")));
+	}
+
+	@Test
+	void lagIsUnknownWhenPrimaryPositionCantBeRead() throws Exception {
+		ReplicaRoutingDataSource router = router(10L);
+		when(primaryConnection.createStatement()).thenThrow(new SQLException("connection refused"));
+		router.refreshLag();
+
+		TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+		assertSame(primaryConnection, router.getConnection());
+		assertTrue(Double.isNaN(router.lagMillis("replica-0")));
+	}
+
+	@Test
+	void readsOwnWritesFromPrimary() throws Exception {
+		ReplicaRoutingDataSource router = router(10L);
+		SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken("a", null, Collections.emptyList()));
+
+		TransactionSynchronizationManager.initSynchronization();
+		router.getConnection();
+		for(TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations())
+			synchronization.afterCompletion(TransactionSynchronization.STATUS_COMMITTED);
+		TransactionSynchronizationManager.clearSynchronization();
+
+		TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+		assertSame(primaryConnection, router.getConnection());
+
+		SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken("b", null, Collections.emptyList()));
+		assertSame(replicaConnection, router.getConnection());
+	}
+
+}
@@ -0,0 +1,68 @@
+package edu.myrza.todoapp.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RingBufferTests {
+
+	@Test
+	void rejectsWhenFullAndAcceptsAfterDrain() {
+		RingBuffer<Integer> buffer = new RingBuffer<>(4);
+		for(int i = 0; i < 4; i++)
+			assertTrue(buffer.offer(i));
+		assertFalse(buffer.offer(4));
+
+		List<Integer> drained = new ArrayList<>();
+		assertEquals(2, buffer.drainTo(drained, 2));
+		assertEquals(2, buffer.size());
+		assertTrue(buffer.offer(4));
+
+		assertEquals(3, buffer.drainTo(drained, 10));
+		assertEquals(5, drained.size());
+		for(int i = 0; i < 5; i++)
+			assertEquals(i, (int) drained.get(i));
+	}
+
+	@Test
+	void deliversEveryElementOfConcurrentProducersOnce() throws Exception {
+		int producers = 4;
+		int perProducer = 100_000;
+		RingBuffer<Integer> buffer = new RingBuffer<>(1024);
+
+		ExecutorService executor = Executors.newFixedThreadPool(producers);
+		List<Future<?>> futures = new ArrayList<>();
+		for(int p = 0; p < producers; p++) {
+			int base = p * perProducer;
+			futures.add(executor.submit(() -> {
+				for(int i = 0; i < perProducer; i++) {
+					while(!buffer.offer(base + i))
+						Thread.yield();
+				}
+			}));
+		}
+
+		Set<Integer> seen = new HashSet<>();
+		List<Integer> batch = new ArrayList<>();
+		long deadline = System.currentTimeMillis() + 30_000;
+		while(seen.size() < producers * perProducer && System.currentTimeMillis() < deadline) {
+			buffer.drainTo(batch, 256);
+			for(Integer element : batch)
+				assertTrue(seen.add(element), "duplicate element " + element);
+			batch.clear();
+		}
+
+		for(Future<?> future : futures)
+			future.get();
+		executor.shutdown();
+
+		assertEquals(producers * perProducer, seen.size());
+	}
+
+}
@@ -0,0 +1,24 @@
+package edu.myrza.todoapp.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RollingChecksumTests {
+
+	@Test
+	void rollingMatchesRecomputing() {
+		byte[] data = new byte[64 * 1024];
+		new Random(7).nextBytes(data);
+		int window = 2048;
+
+		RollingChecksum rolling = RollingChecksum.of(data, 0, window);
+		for(int offset = 1; offset + window <= data.length; offset++) {
+			rolling.roll(data[offset - 1], data[offset + window - 1]);
+			assertEquals(RollingChecksum.of(data, offset, window).value(), rolling.value(), "offset " + offset);
+		}
+	}
+
+}
@@ -0,0 +1,84 @@
+package edu.myrza.todoapp.util;
+
+import edu.myrza.todoapp.model.entity.SegmentEntry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SegmentStoreTests {
+
+	@TempDir
+	Path root;
+
+	private SegmentStore store;
+
+	@BeforeEach
+	void setUp() {
+		StorageVolumes volumes = new StorageVolumes();
+		ReflectionTestUtils.setField(volumes, "defaultRoot", root.toString());
+		ReflectionTestUtils.setField(volumes, "volumesConfig", "");
+		volumes.init();
+
+		store = new SegmentStore(volumes, 16, 32, 600000);
+	}
+
+	@AfterEach
+	void tearDown() throws IOException {
+		store.close();
+	}
+
+	@Test
+	void readsBackAppendedEntries() throws IOException {
+		SegmentEntry first = store.append(StorageVolumes.DEFAULT_VOLUME, bytes("first entry"), 11);
+		SegmentEntry second = store.append(StorageVolumes.DEFAULT_VOLUME, bytes("second"), 6);
+
+		assertEquals(first.getSegmentId(), second.getSegmentId());
+		assertEquals(11, second.getOffset());
+		assertEquals("second", string(store.read(StorageVolumes.DEFAULT_VOLUME, second)));
+		assertEquals("first entry", string(store.read(StorageVolumes.DEFAULT_VOLUME, first)));
+	}
+
+	@Test
+	void startsNewSegmentWhenFull() throws IOException {
+		SegmentEntry first = store.append(StorageVolumes.DEFAULT_VOLUME, new byte[32], 32);
+		SegmentEntry second = store.append(StorageVolumes.DEFAULT_VOLUME, bytes("next"), 4);
+
+		assertNotEquals(first.getSegmentId(), second.getSegmentId());
+		assertEquals(0, second.getOffset());
+		assertEquals("next", string(store.read(StorageVolumes.DEFAULT_VOLUME, second)));
+	}
+
+	@Test
+	void recentlyWrittenSegmentsAreNotSealed() throws IOException {
+		store.append(StorageVolumes.DEFAULT_VOLUME, bytes("entry"), 5);
+
+		assertTrue(store.sealedSegments(StorageVolumes.DEFAULT_VOLUME).isEmpty());
+	}
+
+	@Test
+	void deletedSegmentCantBeRead() throws IOException {
+		SegmentEntry entry = store.append(StorageVolumes.DEFAULT_VOLUME, new byte[32], 32);
+		store.read(StorageVolumes.DEFAULT_VOLUME, entry);
+
+		store.delete(StorageVolumes.DEFAULT_VOLUME, entry.getSegmentId());
+
+		assertThrows(IOException.class, () -> store.read(StorageVolumes.DEFAULT_VOLUME, entry));
+	}
+
+	private static byte[] bytes(String s) {
+		return s.getBytes(StandardCharsets.UTF_8);
+	}
+
+	private static String string(byte[] bytes) {
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+}
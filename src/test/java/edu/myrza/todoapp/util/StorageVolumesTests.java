@@ -0,0 +1,68 @@
+package edu.myrza.todoapp.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StorageVolumesTests {
+
+    @TempDir
+    Path dir;
+
+    private StorageVolumes volumes(String config, long minFreeBytes) {
+        StorageVolumes volumes = new StorageVolumes();
+        ReflectionTestUtils.setField(volumes, "defaultRoot", dir.resolve("files").toString());
+        ReflectionTestUtils.setField(volumes, "volumesConfig", config);
+        ReflectionTestUtils.setField(volumes, "minFreeBytes", minFreeBytes);
+        volumes.init();
+        return volumes;
+    }
+
+    @Test
+    void singleDefaultVolumeWithoutConfig() {
+        StorageVolumes volumes = volumes("", 0);
+
+        assertEquals(StorageVolumes.DEFAULT_VOLUME, volumes.place());
+        assertEquals(dir.resolve("files"), volumes.root(StorageVolumes.DEFAULT_VOLUME));
+        // blobs written before volumes existed have none recorded
+        assertEquals(dir.resolve("files"), volumes.root(null));
+    }
+
+    @Test
+    void parsesConfiguredVolumes() {
+        StorageVolumes volumes = volumes(" default=" + dir.resolve("a") + " , b = " + dir.resolve("b"), 0);
+
+        assertEquals(Arrays.asList("default", "b"), volumes.volumes().stream().map(StorageVolumes.Volume::getName).collect(Collectors.toList()));
+        assertEquals(dir.resolve("b"), volumes.root("b"));
+        assertTrue(Arrays.asList("default", "b").contains(volumes.place()));
+    }
+
+    @Test
+    void rejectsMalformedConfig() {
+        assertThrows(IllegalStateException.class, () -> volumes("a=" + dir.resolve("a") + ",b", 0));
+        assertThrows(IllegalStateException.class, () -> volumes("=" + dir.resolve("a"), 0));
+    }
+
+    @Test
+    void rejectsUnknownVolumes() {
+        StorageVolumes volumes = volumes("a=" + dir.resolve("a"), 0);
+
+        assertThrows(IllegalStateException.class, () -> volumes.root("b"));
+        assertThrows(IllegalStateException.class, () -> volumes.root(null));
+    }
+
+    @Test
+    void placesOnTheEmptiestVolumeWhenAllAreFull() {
+        StorageVolumes volumes = volumes("a=" + dir.resolve("a") + ",b=" + dir.resolve("b"), Long.MAX_VALUE / 2);
+
+        // both roots are on the same disk, the first one of equally full volumes wins
+        assertEquals("a", volumes.place());
+    }
+
+}
@@ -0,0 +1,51 @@
+package edu.myrza.todoapp.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UuidGeneratorTests {
+
+	@Test
+	void generatesVersion7Ids() {
+		UUID id = UuidGenerator.next();
+
+		assertEquals(7, id.version());
+		assertEquals(2, id.variant());
+	}
+
+	@Test
+	void idsAreMonotonicWithinThread() {
+		UUID prev = UuidGenerator.next();
+		for(int i = 0; i < 100_000; i++) {
+			UUID next = UuidGenerator.next();
+			assertTrue(Long.compareUnsigned(next.getMostSignificantBits(), prev.getMostSignificantBits()) > 0);
+			prev = next;
+		}
+	}
+
+	@Test
+	void idsAreUniqueAcrossThreads() throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		List<Future<List<UUID>>> futures = new ArrayList<>();
+		for(int t = 0; t < 8; t++) {
+			futures.add(executor.submit(() -> {
+				List<UUID> ids = new ArrayList<>();
+				for(int i = 0; i < 10_000; i++)
+					ids.add(UuidGenerator.next());
+				return ids;
+			}));
+		}
+
+		Set<UUID> all = new HashSet<>();
+		for(Future<List<UUID>> future : futures)
+			all.addAll(future.get());
+		executor.shutdown();
+
+		assertEquals(80_000, all.size());
+	}
+
+}